@@ -6,7 +6,6 @@ import jgame.Entity;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /** Class for drawing board and managing tiles */
 public class Grid extends Entity {
@@ -38,6 +37,8 @@ public class Grid extends Entity {
 	}
 
 	int width, height, score, slideFrames;
+	/** The score last drawn to the board's layer */
+	private int drawnScore;
 	Tile[] tiles;
 	Dimension size;
 
@@ -55,6 +56,7 @@ public class Grid extends Entity {
 	public void setup() {
 		this.tiles = new Tile[width * height];
 		this.size = new Dimension(20 + 120 * width, 20 + 120 * height);
+		this.setLayer(NumberGame.BOARD_LAYER);
 		this.addTile();
 		this.addTile();
 	}
@@ -64,6 +66,10 @@ public class Grid extends Entity {
 		if(slideFrames > 0) {
 			slideFrames--;
 		}
+		if(score != drawnScore) {	// The board is cached, so it must be redrawn to show the new score
+			drawnScore = score;
+			invalidate();
+		}
 	}
 
 	@Override
@@ -184,7 +190,7 @@ public class Grid extends Entity {
 	 */
 	public void addTile() {
 		List<Integer> empty = emptySpots();
-		int index = empty.get(new Random().nextInt(empty.size()));
+		int index = empty.get(world.getRandom().nextInt(empty.size()));
 		world.add(tiles[index] = new Tile(this, index % width, index / width));
 	}
 
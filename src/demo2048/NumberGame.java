@@ -8,6 +8,7 @@ public class NumberGame extends Game {
 	
 	public static final Font font = new Font("Verdana", Font.BOLD, 50);
 	public static final int framesToSlide = 10; // How many frames tiles should take per move
+	public static final int BOARD_LAYER = -1; // The board never moves, so it is drawn once below the tiles
 	
 	Grid board;
 
@@ -18,6 +19,7 @@ public class NumberGame extends Game {
 	@Override
 	protected void setup() {
 		this.setWindowSize(new Dimension(600,700));
+		world.setLayerStatic(BOARD_LAYER, true);
 		world.add(board = new Grid(4,4));
 		world.setZoomType(World.ZoomType.LETTERBOX);
 		world.camera.y = -50;
@@ -5,7 +5,6 @@ import jgame.Entity;
 import jgame.World;
 
 import java.awt.*;
-import java.util.Random;
 
 public class Ball extends Entity {
 	
@@ -17,7 +16,7 @@ public class Ball extends Entity {
 		this.shape = new Rectangle(-5,-5,10,10);
 		this.rotationMode = RotationMode.NONE;
 		this.color = Color.WHITE;
-		reset();
+		serve();
 	}
 
 	@Override
@@ -34,10 +33,10 @@ public class Ball extends Entity {
 				this.ySpeed *= -1;
 			} else if(edge.direction == Direction.EAST) {									// Right player score
 				PongGame.playerLeft.score++;
-				reset();
+				serve();
 			} else {																		// Left player score
 				PongGame.playerRight.score++;
-				reset();
+				serve();
 			}
 		}
 		
@@ -60,12 +59,11 @@ public class Ball extends Entity {
 	}
 
 	/** Returns the ball to the middle of the screen, resets speed, and waits 100 frames before resuming */
-	private void reset() {
+	private void serve() {
 		this.delay = 100;
 		this.x = 0;
 		this.y = 0;
-		Random r = new Random();
-		this.rotation = 45 + 90*r.nextInt(4);
+		this.rotation = 45 + 90*world.getRandom().nextInt(4);
 		this.speed = 5;
 		this.xSpeed = 5*Math.cos(this.getRadians());
 		this.ySpeed = 5*Math.sin(this.getRadians());
@@ -12,15 +12,17 @@ public class Paddle extends Entity {
 	/** Whether the paddle is the left one. If not, it's probably on the right */
 	boolean onLeft;
 	
-	/** For getting controls, either 'L' or 'R' */
-	char prefix;
+	/** The controls moving this paddle, either the 'L' or 'R' ones */
+	final Controller.Control up, down;
 	
 	/** How many points this paddle has */
 	int score;
 	
 	public Paddle(boolean onLeft) {
 		this.onLeft = onLeft;
-		this.prefix = onLeft?'L':'R';
+		char prefix = onLeft?'L':'R';
+		this.up = Controller.control(prefix+"_UP");
+		this.down = Controller.control(prefix+"_DOWN");
 	}
 
 	@Override
@@ -33,10 +35,10 @@ public class Paddle extends Entity {
 
 	@Override
 	public void update() {
-		if(Controller.controlDown(prefix+"_UP")) {
+		if(up.isDown()) {
 			this.y -= 5;
 		}
-		if(Controller.controlDown(prefix+"_DOWN")) {
+		if(down.isDown()) {
 			this.y += 5;
 		}
 		World.Edge edgeCollide = this.collisionWithType(World.Edge.class);
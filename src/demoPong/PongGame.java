@@ -13,6 +13,7 @@ public class PongGame extends Game {
 	static Paddle playerLeft, playerRight;
 	
 	public static void main(String[] args) {
+		Images.preloadManifest("pong_assets.txt");
 		new PongGame().start();
 	}
 	
@@ -1,18 +1,45 @@
 package jgame;
 
+import java.awt.*;
 import java.awt.image.BufferedImage;
 
 public class Animation extends Sprite {
 	
-	private final BufferedImage[] frames;
-	private int index;
-	private final long delay;
-	private long lastUpdate;
-
+	/**
+	 * Options for what an {@linkplain Animation} does once it reaches its last frame
+	 * @see Playback#LOOP
+	 * @see Playback#ONCE
+	 * @see Playback#PING_PONG
+	 */
+	public enum Playback {
+		/** The animation starts again from its first frame. This is the default. */
+		LOOP,
+		/** The animation stops on its last frame */
+		ONCE,
+		/** The animation plays backwards to its first frame, then forwards again, and so on */
+		PING_PONG
+	}
+	
+	/** Marks a playback which has not started, because it was played before its Animation was used in any world */
+	private static final long NOT_STARTED = Long.MIN_VALUE;
+	
+	/** The frames, which are never changed once created, so they can be shared by any number of Animations */
+	private final Sprite[] frames;
+	private final long frameNanos;
+	private final Playback playback;
+	/**
+	 * The world whose {@linkplain World#getAnimationClock() clock} this Animation is played against, which is the
+	 * last world to draw it or check a collision with it, or {@code null} if it has not been used yet
+	 */
+	private volatile World clock;
+	/** The clock time this Animation started playing */
+	private volatile long startNanos;
+	/** The Animation this one was {@linkplain Animation#play() played} from, or {@code null} */
+	private final Animation source;
 	
 	/**
 	 * Creates an {@linkplain Animation} object with the given frames, and the specified framerate. The Animation will
-	 * cycle through the images of the array, in order, returning the appropriate frame based on the system time.
+	 * cycle through the images of the array, in order, returning the appropriate frame based on the game's time.
 	 * @param sheet An array containing the frames to be played by the animation
 	 * @param fps The desired framerate for the Animation to play
 	 * @see Images#divideSpriteSheet(BufferedImage,int,int)
@@ -24,36 +51,162 @@ public class Animation extends Sprite {
 	/**
 	 * Creates an {@linkplain Animation} object from the given {@linkplain Sprite}, within the range of {@code start}, inclusive,
 	 * to {@code end}, exclusive, and the specified framerate. The Animation will cycle through the sub-images of the Sprite, in order,
-	 * returning the appropriate frame based on the system time.
+	 * returning the appropriate frame based on the game's time.
 	 * @param sheet The sprite from which to retrieve frames
 	 * @param fps The desired framerate for the Animation to play
 	 * @param start the initial index of the Animation, inclusive
 	 * @param end the final index of Animation, exclusive
 	 */
 	public Animation(Sprite sheet, double fps, int start, int end) {
-		super(sheet.getImage(0));
-		this.frames = new BufferedImage[end-start];
+		this(sheet, fps, start, end, Playback.LOOP);
+	}
+	
+	/**
+	 * Creates an {@linkplain Animation} object from the given {@linkplain Sprite}, within the range of {@code start}, inclusive,
+	 * to {@code end}, exclusive, and the specified framerate, which does as {@code playback} specifies once it reaches its
+	 * last frame.
+	 * @param sheet The sprite from which to retrieve frames
+	 * @param fps The desired framerate for the Animation to play
+	 * @param start the initial index of the Animation, inclusive
+	 * @param end the final index of Animation, exclusive
+	 * @param playback What to do after the last frame
+	 */
+	public Animation(Sprite sheet, double fps, int start, int end, Playback playback) {
+		super(sheet.getImage(start));
+		if(end <= start) {
+			throw new IllegalArgumentException("Animation must have at least one frame");
+		}
+		this.frames = new Sprite[end-start];
 		for(int i = 0; i < frames.length; i++) {
-			frames[i] = sheet.getImage(start+i);
+			frames[i] = sheet.getSprite(start+i);
 		}
-		this.delay = Math.round(1000/fps);
-		this.index = 0;
-		this.lastUpdate = System.currentTimeMillis();
+		this.frameNanos = Math.max(1, Math.round(1_000_000_000L/fps));
+		this.playback = playback;
+		this.startNanos = 0;
+		this.source = null;
+	}
+	
+	private Animation(Animation source, Playback playback) {
+		super(source.frames[0].getImage());
+		this.frames = source.frames;
+		this.frameNanos = source.frameNanos;
+		this.playback = playback;
+		this.clock = source.clock;
+		this.startNanos = (clock != null) ? clock.getAnimationClock() : NOT_STARTED;
+		this.source = source;
+	}
+	
+	/**
+	 * Returns a new playback of this {@linkplain Animation}, starting from its first frame now, rather than in step
+	 * with every other Entity using this Animation. The frames are shared rather than copied, so this is cheap
+	 * enough to call for every Entity, such as to start an explosion when it is created.
+	 * <br><br>
+	 * An Animation plays against the clock of the {@linkplain World} it was last drawn in, so one shared by Entities
+	 * in more than one world should be played separately for each of them.
+	 * @return A new Animation sharing this one's frames
+	 */
+	public Animation play() {
+		return play(playback);
+	}
+	
+	/**
+	 * Returns a new playback of this {@linkplain Animation}, starting from its first frame now, which does as
+	 * {@code playback} specifies once it reaches its last frame
+	 * @param playback What to do after the last frame
+	 * @return A new Animation sharing this one's frames
+	 * @see Animation#play()
+	 */
+	public Animation play(Playback playback) {
+		return new Animation(this, playback);
+	}
+	
+	/**
+	 * Returns whether this {@linkplain Animation} has finished playing, which only happens for
+	 * {@linkplain Playback#ONCE} animations which have reached their last frame
+	 * @return Whether the animation is over
+	 */
+	public boolean isFinished() {
+		return playback == Playback.ONCE && step() >= frames.length - 1;
 	}
 	
 	/**
 	 * Returns the {@linkplain BufferedImage} for the current frame of the {@linkplain Animation}, which is
-	 * calculated using the framerate specified during creation of the Animation and the current 
-	 * {@linkplain System#currentTimeMillis() system time}.
+	 * calculated using the framerate specified during creation of the Animation and the time of the
+	 * {@linkplain World} it is used in, which moves forward with each update of the {@linkplain Game}.
 	 * @return The current frame of the animation
 	 */
 	public BufferedImage getImage() {
-		long now = System.currentTimeMillis();
-		if(now - lastUpdate > delay) {
-			index = (index + 1) % frames.length;
-			lastUpdate = now;
+		return currentFrame().getImage();
+	}
+	
+	@Override
+	Sprite currentFrame() {
+		long step = step();
+		int count = frames.length;
+		switch(playback) {
+			case ONCE:
+				return frames[(int)Math.min(step, count - 1)];
+			case PING_PONG:
+				if(count > 1) {
+					int period = 2 * count - 2;
+					int position = (int)(step % period);
+					return frames[(position < count) ? position : period - position];
+				}
+				return frames[0];
+			default:
+				return frames[(int)(step % count)];
+		}
+	}
+	
+	@Override
+	void useClockOf(World world) {
+		if(clock != world) {
+			clock = world;
+		}
+	}
+	
+	/**
+	 * Returns how many frames this Animation has moved through since it started, starting it now if it was
+	 * played before it had a clock
+	 */
+	private long step() {
+		World clock = this.clock;
+		if(clock == null) {
+			return 0;
+		}
+		long now = clock.getAnimationClock();
+		long start = startNanos;
+		if(start == NOT_STARTED) {
+			startNanos = start = now;
+		}
+		return Math.max(0, now - start) / frameNanos;
+	}
+	
+	@Override
+	public boolean hasRotationCache() {
+		return super.hasRotationCache() || (source != null && source.hasRotationCache());
+	}
+	
+	@Override
+	BufferedImage getRotatedImage(BufferedImage image, double radians) {
+		// Playbacks share the rotated frames of the Animation they were played from
+		return (source != null && !super.hasRotationCache()) ? source.getRotatedImage(image, radians)
+				: super.getRotatedImage(image, radians);
+	}
+	
+	/**
+	 * Returns the hitbox of the current frame, if it has one and no hitbox has been set for the whole
+	 * {@linkplain Animation}, otherwise the hitbox of the Animation this was {@linkplain Animation#play() played}
+	 * from, if any, or else the same as {@linkplain Sprite#getShape()}
+	 * @return The {@linkplain Shape} representing this animation's hitbox
+	 */
+	@Override
+	public Shape getShape() {
+		Sprite frame = currentFrame();
+		if(hasHitbox() || (!frame.hasHitbox() && source == null)) {
+			return super.getShape();
 		}
-		return frames[index];
+		return frame.hasHitbox() ? frame.getShape() : source.getShape();
 	}
 	
 	/**
@@ -62,7 +215,24 @@ public class Animation extends Sprite {
 	 * @return the {@linkplain BufferedImage} for the frame
 	 */
 	public BufferedImage getImage(int frame) {
+		return frames[frame].getImage();
+	}
+	
+	/**
+	 * Returns the {@linkplain Sprite} for the specified frame from the {@linkplain Animation}
+	 * @param frame the index of the frame to retrieve
+	 * @return the Sprite for the frame
+	 */
+	public Sprite getFrame(int frame) {
 		return frames[frame];
 	}
 	
+	/**
+	 * Returns the number of frames in the {@linkplain Animation}
+	 * @return the number of frames
+	 */
+	public int getFrameCount() {
+		return frames.length;
+	}
+	
 }
@@ -0,0 +1,190 @@
+package jgame;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * An unchanging snapshot of an {@linkplain Entity Entity's} collision shape in world coordinates, along with the
+ * position, rotation, and local {@linkplain Shape} it was built from. An Entity keeps its latest snapshot, and only
+ * builds a new one once any of those values have changed. The local shape is compared by reference, so a shape
+ * changed in place goes unnoticed until {@linkplain Entity#invalidateGeometry()} is called.
+ */
+final class CollisionGeometry {
+
+	final double x, y, rotation;
+	final Entity.RotationMode rotationMode;
+	final Shape localShape;
+
+	/** The transform from the Entity's local coordinates to world coordinates */
+	final AffineTransform transform;
+	/** The Entity's shape, in world coordinates */
+	final Shape shape;
+	/**
+	 * The bounds of {@linkplain CollisionGeometry#shape}, in world coordinates. These may reach past curved parts of
+	 * the shape to their control points; see {@linkplain CollisionGeometry#getTightBounds()}.
+	 */
+	final Rectangle2D bounds;
+
+	private volatile Area area;
+	private volatile Rectangle2D tightBounds;
+	private volatile Narrowphase.Convex convex;
+
+	CollisionGeometry(double x, double y, double rotation, Entity.RotationMode rotationMode, Shape localShape,
+			AffineTransform transform) {
+		this.x = x;
+		this.y = y;
+		this.rotation = rotation;
+		this.rotationMode = rotationMode;
+		this.localShape = localShape;
+		this.transform = transform;
+		this.shape = transform.createTransformedShape(localShape);
+		this.bounds = shape.getBounds2D();
+	}
+
+	/**
+	 * Returns whether this snapshot still describes an Entity with the specified values
+	 */
+	boolean matches(double x, double y, double rotation, Entity.RotationMode rotationMode, Shape localShape) {
+		return this.x == x && this.y == y && this.rotation == rotation
+				&& this.rotationMode == rotationMode && this.localShape == localShape;
+	}
+
+	/**
+	 * Returns the {@linkplain Area} of the world-space shape, building it on first use. The returned Area is shared,
+	 * and must not be modified; use {@code new Area(getArea())}, which is cheap, to get a modifiable copy.
+	 */
+	Area getArea() {
+		Area out = area;
+		if(out == null) {
+			out = new Area(shape);
+			area = out;
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the smallest rectangle containing the world-space shape, finding it on first use. Unlike
+	 * {@linkplain CollisionGeometry#bounds}, this reaches only as far as the outline itself, including where it
+	 * curves, so it is exact enough to decide collisions with. The returned rectangle is shared, and must not be
+	 * modified.
+	 */
+	Rectangle2D getTightBounds() {
+		Rectangle2D out = tightBounds;
+		if(out == null) {
+			out = tightBounds(shape);
+			tightBounds = out;
+		}
+		return out;
+	}
+
+	private static Rectangle2D tightBounds(Shape shape) {
+		double[] x = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		double[] y = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		double[] c = new double[6];
+		double lastX = 0, lastY = 0, startX = 0, startY = 0;
+		for(PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+			switch(it.currentSegment(c)) {
+			case PathIterator.SEG_MOVETO:
+				startX = lastX = c[0];
+				startY = lastY = c[1];
+				include(x, lastX);
+				include(y, lastY);
+				break;
+			case PathIterator.SEG_LINETO:
+				lastX = c[0];
+				lastY = c[1];
+				include(x, lastX);
+				include(y, lastY);
+				break;
+			case PathIterator.SEG_QUADTO:
+				quadExtremes(x, lastX, c[0], c[2]);
+				quadExtremes(y, lastY, c[1], c[3]);
+				lastX = c[2];
+				lastY = c[3];
+				break;
+			case PathIterator.SEG_CUBICTO:
+				cubicExtremes(x, lastX, c[0], c[2], c[4]);
+				cubicExtremes(y, lastY, c[1], c[3], c[5]);
+				lastX = c[4];
+				lastY = c[5];
+				break;
+			case PathIterator.SEG_CLOSE:
+				lastX = startX;
+				lastY = startY;
+				break;
+			}
+		}
+		if(x[0] > x[1]) {
+			return new Rectangle2D.Double();
+		}
+		return new Rectangle2D.Double(x[0], y[0], x[1] - x[0], y[1] - y[0]);
+	}
+
+	/**
+	 * Widens {@code range}, a minimum and maximum, to include {@code value}
+	 */
+	private static void include(double[] range, double value) {
+		range[0] = Math.min(range[0], value);
+		range[1] = Math.max(range[1], value);
+	}
+
+	/**
+	 * Widens {@code range} to include one coordinate of a quadratic curve, which is furthest out either at its end or
+	 * where its derivative is zero
+	 */
+	private static void quadExtremes(double[] range, double p0, double p1, double p2) {
+		include(range, p2);
+		double denominator = p0 - 2*p1 + p2;
+		if(denominator != 0) {
+			double t = (p0 - p1) / denominator;
+			if(t > 0 && t < 1) {
+				double u = 1 - t;
+				include(range, u*u*p0 + 2*t*u*p1 + t*t*p2);
+			}
+		}
+	}
+
+	/**
+	 * Widens {@code range} to include one coordinate of a cubic curve, which is furthest out either at its end or
+	 * where its derivative, a quadratic, is zero
+	 */
+	private static void cubicExtremes(double[] range, double p0, double p1, double p2, double p3) {
+		include(range, p3);
+		double a = -p0 + 3*p1 - 3*p2 + p3, b = 2*(p0 - 2*p1 + p2), c = p1 - p0;
+		if(Math.abs(a) <= 1e-12 * (Math.abs(b) + Math.abs(c))) {
+			if(b != 0) {
+				cubicPoint(range, -c / b, p0, p1, p2, p3);
+			}
+			return;
+		}
+		double discriminant = b*b - 4*a*c;
+		if(discriminant >= 0) {
+			double root = Math.sqrt(discriminant);
+			cubicPoint(range, (-b + root) / (2*a), p0, p1, p2, p3);
+			cubicPoint(range, (-b - root) / (2*a), p0, p1, p2, p3);
+		}
+	}
+
+	private static void cubicPoint(double[] range, double t, double p0, double p1, double p2, double p3) {
+		if(t > 0 && t < 1) {
+			double u = 1 - t;
+			include(range, u*u*u*p0 + 3*t*u*u*p1 + 3*t*t*u*p2 + t*t*t*p3);
+		}
+	}
+
+	/**
+	 * Returns the convex form of the world-space shape used for analytic collision tests, classifying it on first
+	 * use, or {@linkplain Narrowphase#NONE} if the shape has none
+	 */
+	Narrowphase.Convex getConvex() {
+		Narrowphase.Convex out = convex;
+		if(out == null) {
+			out = Narrowphase.classify(localShape, transform);
+			convex = out;
+		}
+		return out;
+	}
+}
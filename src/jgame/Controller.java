@@ -2,8 +2,13 @@ package jgame;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class Controller {
 	
@@ -13,38 +18,30 @@ public abstract class Controller {
 		
 		@Override
 		public void keyPressed(KeyEvent e) {
-			int code = e.getKeyCode();
-			if(!keysDown.contains(code)) {
-				newKeysDown.add(code);
-			}
+			events.offer(KEY_PRESSED, e.getKeyCode());
 		}
 		@Override
 		public void keyReleased(KeyEvent e) {
-			int code = e.getKeyCode();
-			keysReleased.add(code);
+			events.offer(KEY_RELEASED, e.getKeyCode());
 		}
 		@Override
 		public void mouseDragged(MouseEvent e) {
-			currentMouse = e.getPoint();
+			setMouse(e);
 		}
 		@Override
 		public void mouseMoved(MouseEvent e) {
-			currentMouse = e.getPoint();
+			setMouse(e);
 		}
 		@Override
 		public void mouseClicked(MouseEvent e) {
 		}
 		@Override
 		public void mousePressed(MouseEvent e) {
-			int code = e.getButton();
-			if(!mouseButtonsDown.contains(code)) {
-				newMouseButtonsDown.add(code);
-			}
+			events.offer(BUTTON_PRESSED, e.getButton());
 		}
 		@Override
 		public void mouseReleased(MouseEvent e) {
-			int code = e.getButton();
-			mouseButtonsReleased.add(code);
+			events.offer(BUTTON_RELEASED, e.getButton());
 		}
 		@Override
 		public void mouseEntered(MouseEvent e) {
@@ -62,11 +59,143 @@ public abstract class Controller {
 			// TODO Auto-generated method stub
 			
 		}
+		
+		private static void setMouse(MouseEvent e) {
+			currentMouse = ((long)e.getX() << 32) | (e.getY() & 0xFFFFFFFFL);
+		}
 	}
-
+	
+	/**
+	 * A fixed size queue of input events, written only by the event dispatch thread and read only by
+	 * {@linkplain Controller#refresh()}, so neither side ever waits for or allocates anything. Each event is a single
+	 * {@code int}, with its type in the top bits and its key code or button in the rest.
+	 */
+	private static final class EventQueue {
+		private static final int CAPACITY = 1024;
+		private final int[] events = new int[CAPACITY];
+		/** The number of events ever written, and ever read. Only the writer changes {@code head}, and only the reader {@code tail}. */
+		private volatile int head, tail;
+		/**
+		 * Whether an event was dropped because the queue was full, so which keys and buttons are held is no longer
+		 * known. Set only by the writer, and cleared only by the reader.
+		 */
+		private volatile boolean overflowed;
+		
+		/**
+		 * Adds an event. If the queue is full, which only happens if the game stops refreshing input, such as before
+		 * it starts or while it is loading, the event is dropped and the queue is marked as having
+		 * {@linkplain EventQueue#overflowed overflowed}, so a dropped release cannot leave a key held.
+		 */
+		void offer(int type, int code) {
+			if(code < 0 || code >= CODE_MASK) {	// The largest code is kept for resyncing
+				return;
+			}
+			int h = head;
+			if(h - tail == CAPACITY) {
+				overflowed = true;
+				return;
+			}
+			events[h & (CAPACITY - 1)] = type | code;
+			head = h + 1;	// Publishes the event
+		}
+		
+		/**
+		 * Returns whether events have been dropped since the last call, and clears the mark
+		 */
+		boolean takeOverflow() {
+			if(!overflowed) {
+				return false;
+			}
+			overflowed = false;
+			return true;
+		}
+		
+		boolean isEmpty() {
+			return head == tail;
+		}
+		
+		/**
+		 * Removes and returns the oldest event. Must only be called when the queue is not empty.
+		 */
+		int poll() {
+			int t = tail;
+			int event = events[t & (CAPACITY - 1)];
+			tail = t + 1;	// Frees the slot for the writer
+			return event;
+		}
+	}
+	
+	private static final int
+		CODE_MASK = 0x0FFFFFFF,
+		KEY_PRESSED = 0,
+		KEY_RELEASED = 1 << 28,
+		BUTTON_PRESSED = 2 << 28,
+		BUTTON_RELEASED = 3 << 28,
+		TYPE_MASK = 3 << 28,
+		/** Releases every key and button, applied after the event queue overflowed, since releases may have been lost */
+		RESYNC = KEY_RELEASED | CODE_MASK;
+	
+	private static final EventQueue events = new EventQueue();
+	
 	public static ControllerListener listener = new ControllerListener();
 	
-	private static final HashMap<Integer,Set<String>> controls = new HashMap<>();
+	/**
+	 * A named control, such as {@code "UP"}, which any number of keys can be {@linkplain Controller#addKeyBind(String, int)
+	 * bound} to. Each name has exactly one Control, so it can be looked up once, such as when an {@linkplain Entity}
+	 * is created, and then checked every update with a single bit test, instead of by name.
+	 * <br><br>
+	 * Example usage:
+	 * <br>{@code Controller.Control jump = Controller.control("jump");}
+	 * <br>{@code if(jump.isPressed()) ...}
+	 * @see Controller#control(String)
+	 */
+	public static final class Control {
+		private final String name;
+		private final int id;
+		
+		private Control(String name, int id) {
+			this.name = name;
+			this.id = id;
+		}
+		
+		/**
+		 * Returns whether any key bound to this control is currently being held
+		 * @return Whether the control is being held
+		 * @see Controller#controlDown(String)
+		 */
+		public boolean isDown() {
+			return controlsDown.get(id);
+		}
+		
+		/**
+		 * Returns whether a key bound to this control was pressed since the last refresh
+		 * @return Whether the control has been pressed
+		 * @see Controller#controlPressed(String)
+		 */
+		public boolean isPressed() {
+			return controlsPressed.get(id);
+		}
+		
+		/**
+		 * Returns the name of this control, in upper case
+		 * @return The control's name
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	
+	/** Every control, by id */
+	private static final List<Control> controlList = new ArrayList<>();
+	/** Every control, by its upper case name */
+	private static final Map<String,Control> controlNames = new ConcurrentHashMap<>();
+	/** The ids of the controls bound to each key */
+	private static final HashMap<Integer,BitSet> controls = new HashMap<>();
 	static {
 		addKeyBind("UP",KeyEvent.VK_UP);
 		addKeyBind("DOWN",KeyEvent.VK_DOWN);
@@ -79,53 +208,314 @@ public abstract class Controller {
 		addKeyBind("SPACE",KeyEvent.VK_SPACE);
 	}
 	
-	private static final Set<String>
-			controlsDown = new HashSet<>();
-	private static final Set<String> controlsPressed = new HashSet<>();
-	private static final Set<Integer>
-			keysDown = new HashSet<>();
-	private static Set<Integer> keysPressed = new HashSet<>();
-	private static Set<Integer> newKeysDown = new HashSet<>();
-	private static final Set<Integer> keysReleased = new HashSet<>();
-	private static final Set<Integer> mouseButtonsDown = new HashSet<>();
-	private static Set<Integer> mouseButtonsPressed = new HashSet<>();
-	private static Set<Integer> newMouseButtonsDown = new HashSet<>();
-	private static final Set<Integer> mouseButtonsReleased = new HashSet<>();
+	/** The ids of the controls being held, and pressed since the last refresh */
+	private static final BitSet
+			controlsDown = new BitSet(),
+			controlsPressed = new BitSet();
+	/*
+	 * Input state, which only changes during refresh(), on the thread updating the game. Mouse buttons are bits of
+	 * a single long, since there are rarely more than a handful.
+	 */
+	private static final BitSet
+			keysDown = new BitSet(256),
+			keysPressed = new BitSet(256);
+	private static long mouseButtonsDown, mouseButtonsPressed;
+	/** Whether the controls must be found again at the next refresh */
+	private static boolean controlsChanged;
 	
+	/** The latest position of the mouse, as its x coordinate in the high half and its y coordinate in the low half */
+	private static volatile long currentMouse;
+	private static long lastMouse;
 	private static Point 
 		mouseMove = new Point(),
-		mousePos = new Point(),
-		currentMouse = new Point();
+		mousePos = new Point();
+	
+	/*
+	 * Recording and replaying input. Each update is written as a varint holding the number of events and, in its
+	 * lowest bit, whether the mouse moved, followed by each event as a varint of its code and type, then the
+	 * mouse's movement as two zigzag varints. An update without input takes a single byte.
+	 */
+	private static final Object recordLock = new Object();
+	private static volatile DataOutputStream recording;
+	private static volatile DataInputStream replaying;
+	/** The events applied during the current refresh, kept to be recorded */
+	private static int[] tickEvents = new int[64];
+	private static int tickEventCount;
 	
 	/**
-	 * Updates the lists of keys storing new presses, held keys, and released keys.
+	 * Applies the input events received since the last refresh, updating which keys and buttons are held and
+	 * which were newly pressed. Allocates nothing unless the mouse has moved.
 	 */
 	static void refresh() {
-		mouseButtonsDown.addAll(newMouseButtonsDown);
-		mouseButtonsPressed = newMouseButtonsDown;
-		newMouseButtonsDown = new HashSet<>();
-		mouseButtonsDown.removeAll(mouseButtonsReleased);
-		mouseButtonsReleased.clear();
-		
-		keysDown.addAll(newKeysDown);
-		keysPressed = newKeysDown;
-		newKeysDown = new HashSet<>();
-		keysDown.removeAll(keysReleased);
-		keysReleased.clear();
+		boolean pressed = !keysPressed.isEmpty();
+		keysPressed.clear();
+		mouseButtonsPressed = 0;
+		tickEventCount = 0;
+		long mouse;
+		DataInputStream in = replaying;
+		if(in != null) {
+			events.takeOverflow();
+			while(!events.isEmpty()) {
+				events.poll();	// Live input is ignored while replaying
+			}
+			mouse = replayTick(in);
+		} else {
+			boolean overflowed = events.takeOverflow();
+			while(!events.isEmpty()) {
+				apply(events.poll());
+			}
+			if(overflowed) {	// After the queued events, since the ones dropped came after them
+				apply(RESYNC);
+			}
+			mouse = currentMouse;
+			if(recording != null) {
+				recordTick(mouse);
+			}
+		}
+		boolean changed = controlsChanged || pressed || tickEventCount > 0;
+		controlsChanged = false;
 		
-		mouseMove = new Point(currentMouse.x - mousePos.x, currentMouse.y - mousePos.y);
-		mousePos = currentMouse;
+		if(mouse != lastMouse) {
+			Point current = new Point((int)(mouse >> 32), (int)mouse);
+			mouseMove = new Point(current.x - mousePos.x, current.y - mousePos.y);
+			mousePos = current;
+			lastMouse = mouse;
+		} else if(mouseMove.x != 0 || mouseMove.y != 0) {
+			mouseMove = new Point();
+		}
 		
-		controlsDown.clear();
-		for(int key : keysDown) {
-			if(controls.containsKey(key)) controlsDown.addAll(controls.get(key));
+		if(changed) {
+			controlsDown.clear();
+			for(int key = keysDown.nextSetBit(0); key >= 0; key = keysDown.nextSetBit(key + 1)) {
+				BitSet bound = controls.get(key);
+				if(bound != null) controlsDown.or(bound);
+			}
+			controlsPressed.clear();
+			for(int key = keysPressed.nextSetBit(0); key >= 0; key = keysPressed.nextSetBit(key + 1)) {
+				BitSet bound = controls.get(key);
+				if(bound != null) controlsPressed.or(bound);
+			}
+		}
+	}
+	
+	/**
+	 * Applies a single input event, and keeps it to be recorded
+	 */
+	private static void apply(int event) {
+		if(tickEventCount == tickEvents.length) {
+			tickEvents = Arrays.copyOf(tickEvents, tickEventCount * 2);
+		}
+		tickEvents[tickEventCount++] = event;
+		int code = event & CODE_MASK;
+		switch(event & TYPE_MASK) {
+			case KEY_PRESSED:
+				if(!keysDown.get(code)) {
+					keysDown.set(code);
+					keysPressed.set(code);
+				}
+				break;
+			case KEY_RELEASED:
+				if(event == RESYNC) {
+					keysDown.clear();
+					mouseButtonsDown = 0;
+				} else {
+					keysDown.clear(code);
+				}
+				break;
+			case BUTTON_PRESSED:
+				if(code < 64 && (mouseButtonsDown & (1L << code)) == 0) {
+					mouseButtonsDown |= 1L << code;
+					mouseButtonsPressed |= 1L << code;
+				}
+				break;
+			default:
+				if(code < 64) {
+					mouseButtonsDown &= ~(1L << code);
+				}
+		}
+	}
+	
+	/**
+	 * Clears all input, so recording and replaying both start with no keys or buttons held and the mouse at the
+	 * origin
+	 */
+	private static void resetInput() {
+		while(!events.isEmpty()) {
+			events.poll();
 		}
-		controlsPressed.clear();
-		for(int key : keysPressed) {
-			if(controls.containsKey(key)) controlsPressed.addAll(controls.get(key));
+		events.takeOverflow();
+		keysDown.clear();
+		keysPressed.clear();
+		mouseButtonsDown = 0;
+		mouseButtonsPressed = 0;
+		currentMouse = 0;
+		lastMouse = 0;
+		mousePos = new Point();
+		mouseMove = new Point();
+		controlsChanged = true;
+	}
+	
+	/**
+	 * Starts writing the input of every refresh to the specified stream, replacing any current recording
+	 */
+	static void startRecording(DataOutputStream out) {
+		synchronized(recordLock) {
+			stopRecording();
+			resetInput();
+			recording = out;
 		}
 	}
 	
+	/**
+	 * Finishes the current recording, if any, and closes its stream
+	 */
+	static void stopRecording() {
+		synchronized(recordLock) {
+			if(recording != null) {
+				try {
+					recording.close();
+				} catch (IOException e) {
+					System.err.println("Failed to finish input recording: " + e);
+				}
+				recording = null;
+			}
+		}
+	}
+	
+	private static void recordTick(long mouse) {
+		synchronized(recordLock) {
+			if(recording == null) {
+				return;
+			}
+			try {
+				boolean moved = mouse != lastMouse;
+				writeVarint(recording, (tickEventCount << 1) | (moved ? 1 : 0));
+				for(int i = 0; i < tickEventCount; i++) {
+					int event = tickEvents[i];
+					writeVarint(recording, ((event & CODE_MASK) << 2) | ((event & TYPE_MASK) >>> 28));
+				}
+				if(moved) {
+					writeVarint(recording, zigzag((int)(mouse >> 32) - (int)(lastMouse >> 32)));
+					writeVarint(recording, zigzag((int)mouse - (int)lastMouse));
+				}
+			} catch (IOException e) {
+				System.err.println("Failed to record input: " + e);
+				recording = null;
+			}
+		}
+	}
+	
+	/**
+	 * Starts taking input from the specified stream instead of the keyboard and mouse, until it runs out
+	 */
+	static void startReplay(DataInputStream in) {
+		synchronized(recordLock) {
+			stopReplay();
+			resetInput();
+			replaying = in;
+		}
+	}
+	
+	/**
+	 * Stops replaying input, if a replay is running, and goes back to the keyboard and mouse
+	 */
+	static void stopReplay() {
+		synchronized(recordLock) {
+			if(replaying != null) {
+				try {
+					replaying.close();
+				} catch (IOException e) {
+					System.err.println("Failed to close input replay: " + e);
+				}
+				replaying = null;
+			}
+		}
+	}
+	
+	static boolean isReplaying() {
+		return replaying != null;
+	}
+	
+	/**
+	 * Applies the events of the next recorded update, and returns where the mouse was
+	 */
+	private static long replayTick(DataInputStream in) {
+		try {
+			int header = readVarint(in);
+			for(int i = 0; i < header >>> 1; i++) {
+				int event = readVarint(in);
+				apply(((event & 3) << 28) | (event >>> 2));
+			}
+			if((header & 1) != 0) {
+				int x = (int)(lastMouse >> 32) + unzigzag(readVarint(in));
+				int y = (int)lastMouse + unzigzag(readVarint(in));
+				return ((long)x << 32) | (y & 0xFFFFFFFFL);
+			}
+		} catch (EOFException e) {
+			stopReplay();	// The recording is over
+		} catch (IOException e) {
+			System.err.println("Failed to replay input: " + e);
+			stopReplay();
+		}
+		return lastMouse;
+	}
+	
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	private static int readVarint(DataInputStream in) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed input recording");
+	}
+	
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Returns the {@linkplain Control} with the specified name, ignoring case, creating it if there is none. The
+	 * same Control is always returned for the same name, whether or not any keys are bound to it.
+	 * @param name The name of the control
+	 * @return The named control
+	 */
+	public static Control control(String name) {
+		String upper = name.toUpperCase();
+		Control control = controlNames.get(upper);
+		if(control == null) {
+			synchronized(controlList) {
+				control = controlNames.computeIfAbsent(upper, key -> {
+					Control created = new Control(key, controlList.size());
+					controlList.add(created);
+					return created;
+				});
+			}
+		}
+		return control;
+	}
+	
+	/**
+	 * Returns the number of names controls can be looked up by, which is one for each control
+	 */
+	static int getControlNameCount() {
+		return controlNames.size();
+	}
+	
 	/**
 	 * Binds the specified key to the named control.
 	 * <br><br>
@@ -133,12 +523,16 @@ public abstract class Controller {
 	 * for {@linkplain Controller#controlDown(String)} and {@linkplain Controller#controlPressed(String)}
 	 * @param control The control to add to the key
 	 * @param keyCode The key code of the key to bind
+	 * @return The {@linkplain Control} for the named control, to check it without looking up its name
 	 */
-	public static void addKeyBind(String control, int keyCode) {
+	public static Control addKeyBind(String control, int keyCode) {
+		Control bound = control(control);
 		if(!controls.containsKey(keyCode)) {
-			controls.put(keyCode, new HashSet<>());
+			controls.put(keyCode, new BitSet());
 		}
-		controls.get(keyCode).add(control.toUpperCase());
+		controls.get(keyCode).set(bound.id);
+		controlsChanged = true;
+		return bound;
 	}
 	
 	/**
@@ -148,11 +542,12 @@ public abstract class Controller {
 	 */
 	public static void removeKeyBind(String control, int keyCode) {
 		if(controls.containsKey(keyCode)) {
-			Set<String> keyBinds = controls.get(keyCode);
-			keyBinds.remove(control.toUpperCase());
-			if(keyBinds.size() <= 0) {
+			BitSet keyBinds = controls.get(keyCode);
+			keyBinds.clear(control(control).id);
+			if(keyBinds.isEmpty()) {
 				controls.remove(keyCode);
 			}
+			controlsChanged = true;
 		}
 	}
 	
@@ -161,6 +556,7 @@ public abstract class Controller {
 	 */
 	public static void clearKeyBindings() {
 		controls.clear();
+		controlsChanged = true;
 	}
 	
 	/**
@@ -168,8 +564,8 @@ public abstract class Controller {
 	 * @return whether any key has more than one binding
 	 */
 	private static boolean hasMultiBinding() {
-		for(Set<String> set : controls.values()) {
-			if(set.size() > 1) {
+		for(BitSet set : controls.values()) {
+			if(set.cardinality() > 1) {
 				return false;
 			}
 		}
@@ -181,15 +577,12 @@ public abstract class Controller {
 	 * @return whether any binding has more than one key
 	 */
 	private static boolean hasMultiKeys() {
-		Set<String> binds = new HashSet<>();
-		for(Set<String> set : controls.values()) {
-			for(String str : set) {
-				if(binds.contains(str)) {
-					return true;
-				} else {
-					binds.add(str);
-				}
+		BitSet binds = new BitSet();
+		for(BitSet set : controls.values()) {
+			if(binds.intersects(set)) {
+				return true;
 			}
+			binds.or(set);
 		}
 		return false;
 	}
@@ -224,10 +617,11 @@ public abstract class Controller {
 			}
 		}
 		List<Binding> toPrint = new ArrayList<>();
-		for(Map.Entry<Integer, Set<String>> entry : controls.entrySet()) {
+		for(Map.Entry<Integer, BitSet> entry : controls.entrySet()) {
 			String key = entry.getKey()+" ("+KeyEvent.getKeyText(entry.getKey())+")";
-			for(String bind : entry.getValue()) {
-				toPrint.add(new Binding(key,bind));
+			BitSet binds = entry.getValue();
+			for(int id = binds.nextSetBit(0); id >= 0; id = binds.nextSetBit(id + 1)) {
+				toPrint.add(new Binding(key,controlList.get(id).name));
 			}
 		}
 		int width = 0;
@@ -251,7 +645,7 @@ public abstract class Controller {
 	 * @see Controller#controlDown(String)
 	 */
 	public static boolean keyDown(int keyCode) {
-		return keysDown.contains(keyCode);
+		return keyCode >= 0 && keysDown.get(keyCode);
 	}
 	
 	/**
@@ -264,7 +658,7 @@ public abstract class Controller {
 	 * @see Controller#controlPressed(String)
 	 */
 	public static boolean keyPressed(int keyCode) {
-		return keysPressed.contains(keyCode);
+		return keyCode >= 0 && keysPressed.get(keyCode);
 	}
 	
 	/**
@@ -275,7 +669,7 @@ public abstract class Controller {
 	 * @see Controller#mouseButtonPressed(int)
 	 */
 	public static boolean mouseButtonDown(int button) {
-		return mouseButtonsDown.contains(button);
+		return button >= 0 && button < 64 && (mouseButtonsDown & (1L << button)) != 0;
 	}
 	
 	/**
@@ -285,19 +679,22 @@ public abstract class Controller {
 	 * @see Controller#mouseButtonDown(int)
 	 */
 	public static boolean mouseButtonPressed(int button) {
-		return mouseButtonsPressed.contains(button);
+		return button >= 0 && button < 64 && (mouseButtonsPressed & (1L << button)) != 0;
 	}
 	
 	/**
 	 * Returns whether the specified control is currently being held. This returns {@code true} as long as the key is down.
+	 * Each call looks the control up by name, so code checking it every update should keep its
+	 * {@linkplain Controller#control(String) Control} instead.
 	 * @param control The name of the control to check
 	 * @return Whether the named control is being held
 	 * @see Controller#addKeyBind(String, int)  to register controls
 	 * @see Controller#controlPressed(String)
 	 * @see Controller#keyDown(int)
+	 * @see Control#isDown()
 	 */
 	public static boolean controlDown(String control) {
-		return controlsDown.contains(control.toUpperCase());
+		return control(control).isDown();
 	}
 	
 	/**
@@ -307,9 +704,10 @@ public abstract class Controller {
 	 * @see Controller#addKeyBind(String, int)  to register controls
 	 * @see Controller#controlDown(String)
 	 * @see Controller#keyPressed(int)
+	 * @see Control#isPressed()
 	 */
 	public static boolean controlPressed(String control) {
-		return controlsPressed.contains(control.toUpperCase());
+		return control(control).isPressed();
 	}
 	
 	/**
@@ -4,14 +4,28 @@ import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public abstract class Entity {
 	
 	private static final Shape defaultShape = new Ellipse2D.Double(-10, -10, 20, 20);
-		
+	
+	/** Whether each class of Entity draws itself, so that what it draws over cannot be known */
+	private static final ClassValue<Boolean> customPaint = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			try {
+				return type.getMethod("paint", Graphics.class).getDeclaringClass() != Entity.class
+						|| type.getMethod("rawPaint", Graphics.class).getDeclaringClass() != Entity.class;
+			} catch (NoSuchMethodException e) {
+				return true;
+			}
+		}
+	};
+	
 	/**
 	 * A number of options for rotation of an {@linkplain Entity}
 	 * @see RotationMode#ROTATE
@@ -47,6 +61,37 @@ public abstract class Entity {
 	 */
 	public RotationMode rotationMode = RotationMode.ROTATE;
 	
+	/**
+	 * A number of options for how an {@linkplain Entity} is tested for collisions
+	 * @see CollisionMode#SHAPE
+	 * @see CollisionMode#PIXEL
+	 */
+	public enum CollisionMode {
+		/**
+		 * {@linkplain Entity Entities} with this collision mode collide using their {@linkplain Entity#getShape()
+		 * shape}. This is the default.
+		 * @see CollisionMode
+		 */
+		SHAPE,
+		/**
+		 * {@linkplain Entity Entities} with this collision mode collide using the solid pixels of their
+		 * {@linkplain Entity#sprite sprite}, so only the parts which are actually drawn can touch. Two such Entities
+		 * are compared pixel by pixel, and one compared to an unrotated rectangle checks for solid pixels inside it.
+		 * <br><br>
+		 * Pixels can only be compared while the Entity is unrotated, or flipped by {@linkplain RotationMode#FLIP};
+		 * otherwise, or if the other Entity has any other shape, its shape is used as usual. The Entity's shape is
+		 * still used to find what it might touch, so it should cover the whole sprite, as it does by default.
+		 * @see CollisionMode
+		 */
+		PIXEL
+	}
+	
+	/**
+	 * Controls how the {@linkplain Entity} is tested for collisions.
+	 * @see Entity.CollisionMode
+	 */
+	public CollisionMode collisionMode = CollisionMode.SHAPE;
+	
 	/** 
 	 * The horizontal position of the {@linkplain Entity}.
 	 * <br>Increasing values move the Entity rightwards.
@@ -72,6 +117,10 @@ public abstract class Entity {
 	 * The {@link Shape} of this {@link Entity} which is used for collisions, and, if no {@link
 	 * Entity#sprite} is set, drawing to the {@link World}.
 	 * <br>This shape should be centered about the point (0,0)
+	 * <br>To change the shape, assign a new one. Collisions are worked out from a copy of the shape which is only
+	 * rebuilt when this field (or the position or rotation) changes, so changing the existing shape in place, such
+	 * as with {@code Rectangle.setSize} or {@code Polygon.addPoint}, must be followed by
+	 * {@linkplain Entity#invalidateGeometry()}.
 	 */
 	public Shape shape = null;
 	
@@ -96,6 +145,41 @@ public abstract class Entity {
 	 */
 	protected World world;
 	
+	/** The range of {@linkplain SpatialHash} cells this Entity occupies, maintained by the {@linkplain World} */
+	int cellMinX, cellMinY, cellMaxX, cellMaxY;
+	boolean hashed, oversized;
+	/** Whether this Entity is waiting for the {@linkplain World} to move it to the cells matching its new geometry */
+	volatile boolean rehashPending;
+	
+	/** Marks this Entity while the {@linkplain World} is removing it */
+	boolean removing;
+	
+	/** This Entity's index in its {@linkplain World World's} list of entities, or -1 if it is not in one */
+	int slot = -1;
+	/** This Entity's index in each of its world's type buckets, in the same order as the types of its class */
+	int[] typeSlots;
+	
+	/** The layer this Entity is drawn in, and its index in that layer's list of Entities */
+	int layer;
+	int layerSlot;
+	
+	/** The pool this Entity was {@linkplain EntityPool#acquire() acquired} from, if any, and whether it is in it */
+	EntityPool<?> pool;
+	boolean pooled;
+	
+	/** The bounds of {@linkplain Entity#drawBoundsShape}, kept so they are not rebuilt every frame */
+	private Rectangle2D drawBounds;
+	private Shape drawBoundsShape;
+	
+	/** The position and rotation at the start of the latest update, for drawing between updates */
+	double lastX, lastY, lastRotation;
+	
+	/**
+	 * The most recently built collision geometry, rebuilt only once it no longer matches this Entity. Volatile, as it
+	 * may be rebuilt by any thread checking a collision with this Entity.
+	 */
+	private volatile CollisionGeometry geometry;
+	
 	/**
 	 * This method is called when the {@linkplain World} first starts. Setup should include anything that needs
 	 * to be done before the Entity first displays
@@ -117,23 +201,35 @@ public abstract class Entity {
 	 */
 	public abstract void update();
 	
+	/**
+	 * This method is called when an {@linkplain Entity} {@linkplain EntityPool#acquire() taken from a pool} is
+	 * removed from the {@linkplain World} and returned to the pool. It should let go of anything the Entity no longer
+	 * needs while it waits to be reused, such as references to other Entities; anything needed to show the Entity
+	 * again belongs in {@linkplain Entity#setup()}, which is called when it is added again. Does nothing by default.
+	 * @see EntityPool
+	 */
+	protected void reset() {
+		
+	}
+	
 	/**
 	 * Returns an {@linkplain Entity} of the specified type which collides with this one,
 	 * if one exists, else returns {@code null}.
 	 * <br><br>
 	 * Example usage: If {@code class Enemy extends Entity}, a colliding Enemy could be retrieved with
 	 * <br>{@code Enemy e = collisionWithType(Enemy.class)}
+	 * <br><br>
+	 * Only Entities near this one are checked. The world notices an Entity has moved at the start of each update,
+	 * after the Entity's own update, and whenever its collision shape is next used, for example by
+	 * {@linkplain Entity#collidesWith(Entity)} or {@linkplain Entity#getCollisionBounds()}. An Entity moved by
+	 * another Entity's update should be used in one of these ways before it can be found at its new position in the
+	 * same update.
 	 * @param <T> The class to check for collisions with. Must be a subclass of Entity.
 	 * @param type The class to check for a collision with. Must be a subclass of Entity.
 	 * @return An Entity which overlaps this one, or {@code null} if there are none.
 	 */
 	public <T extends Entity> T collisionWithType(Class<T> type){
-		for(T e : world.getAllOfType(type)) {
-			if(this.collidesWith(e)) {
-				return e;
-			}
-		}
-		return null;
+		return world.findCollision(this, type, null);
 	}
 	
 	/**
@@ -147,9 +243,9 @@ public abstract class Entity {
 	 * @return An List containing all Entities which overlap this one
 	 */
 	public <T extends Entity> List<T> collisionsWithType(Class<T> type) {
-		return world.getAllOfType(type).stream()
-				.filter(e->e.collidesWith(this))
-				.collect(Collectors.toList());
+		List<T> out = new ArrayList<>();
+		world.findCollision(this, type, out);
+		return out;
 	}
 	
 	/**
@@ -159,11 +255,21 @@ public abstract class Entity {
 	 * @return Whether this entity and {@code other} are colliding.
 	 */
 	public boolean collidesWith(Entity other) {
-		Area myArea = this.getCollisionArea();
-		Area otherArea = other.getCollisionArea();
-		if(myArea.getBounds2D().intersects(otherArea.getBounds2D())) {
-			myArea.intersect(otherArea);
-			return(!myArea.isEmpty());
+		if(other instanceof World.Edge edge) {
+			return edge.touches(this.getGeometry().getTightBounds());
+		} else if(this instanceof World.Edge edge) {
+			return edge.touches(other.getGeometry().getTightBounds());
+		}
+		CollisionGeometry mine = this.getGeometry();
+		CollisionGeometry theirs = other.getGeometry();
+		if(mine.bounds.intersects(theirs.bounds)) {
+			if(this.collisionMode == CollisionMode.PIXEL || other.collisionMode == CollisionMode.PIXEL) {
+				Boolean pixels = PixelMask.intersects(this, other);
+				if(pixels != null) {
+					return pixels;
+				}
+			}
+			return Narrowphase.intersects(mine, theirs);
 		} else {
 			return false;
 		}
@@ -216,14 +322,22 @@ public abstract class Entity {
 	 * @return This Entity's transform
 	 */
 	protected final AffineTransform getTransform() {
+		return getTransform(x, y, rotation, rotationMode);
+	}
+	
+	/**
+	 * Builds a transform from the specified values rather than this Entity's fields, so it only reads them once and
+	 * never changes them, and is safe to use while another thread updates the Entity
+	 */
+	private static AffineTransform getTransform(double x, double y, double rotation, RotationMode rotationMode) {
 		AffineTransform out = new AffineTransform();
 		out.translate(x, y);
 		switch(rotationMode) {
 		case ROTATE:
-			out.rotate(this.getRadians());
+			out.rotate(Math.toRadians(Direction.normalizeDegrees(rotation)));
 			break;
 		case FLIP:
-			if(Math.abs(rotation) > 90) {
+			if(Math.abs(Direction.normalizeDegrees(rotation)) > 90) {
 				out.scale(-1, 1);
 			}
 			break;
@@ -233,13 +347,94 @@ public abstract class Entity {
 		return out;
 	}
 	
+	/**
+	 * Draws this Entity's {@linkplain Entity#sprite sprite} from its {@linkplain Sprite#setRotationCache(int, long)
+	 * rotation cache}, moved into place without rotating, if it is rotated normally and has a cached copy for the
+	 * current angle. Entities which draw themselves are never drawn this way.
+	 * @return Whether the sprite was drawn
+	 */
+	private boolean paintPreRotated(Graphics2D g2, AffineTransform transform) {
+		if(sprite == null || rotationMode != RotationMode.ROTATE || !sprite.hasRotationCache()
+				|| customPaint.get(getClass())) {
+			return false;
+		}
+		double radians = Math.atan2(transform.getShearY(), transform.getScaleX());
+		BufferedImage rotated = sprite.getRotatedImage(sprite.getImage(), radians);
+		if(rotated == null) {
+			return false;
+		}
+		g2.translate(transform.getTranslateX() - rotated.getWidth() / 2.0,
+				transform.getTranslateY() - rotated.getHeight() / 2.0);
+		g2.drawImage(rotated, 0, 0, null);
+		return true;
+	}
+	
+	/**
+	 * Returns the transform to draw this {@linkplain Entity} with, which is part way between its position at the start
+	 * of the latest update and its current position, if the {@linkplain World} is drawing between updates
+	 */
+	private AffineTransform getRenderTransform() {
+		if(world == null || !world.interpolate || world.renderAlpha >= 1) {
+			return this.getGeometry().transform;
+		}
+		double alpha = world.renderAlpha;
+		double turn = Direction.normalizeDegrees(rotation - lastRotation);
+		return getTransform(lastX + (x - lastX) * alpha, lastY + (y - lastY) * alpha, lastRotation + turn * alpha,
+				rotationMode);
+	}
+	
 	/**
 	 * Returns the {@linkplain Area} describing this {@linkplain Entity Entity's} {@linkplain Shape}, transformed to
 	 * the correct position and orientation of the Entity
 	 * @return This Entity's Area
 	 */
 	public final Area getCollisionArea() {
-		return new Area(this.getTransform().createTransformedShape(this.getShape()));
+		return new Area(this.getGeometry().getArea());
+	}
+	
+	/**
+	 * Returns the smallest rectangle containing this {@linkplain Entity Entity's} {@linkplain Shape}, transformed to
+	 * the correct position and orientation of the Entity
+	 * @return This Entity's bounds, in world coordinates
+	 */
+	public Rectangle2D getCollisionBounds() {
+		return (Rectangle2D)this.getGeometry().bounds.clone();
+	}
+	
+	/**
+	 * Returns this {@linkplain Entity Entity's} collision geometry, rebuilding it only if the position, rotation,
+	 * rotation mode, or {@linkplain Entity#getShape() shape} have changed since it was last built
+	 */
+	final CollisionGeometry getGeometry() {
+		// Read each field once, as another thread may be moving this Entity while checking a collision with it
+		double x = this.x, y = this.y, rotation = this.rotation;
+		RotationMode rotationMode = this.rotationMode;
+		Sprite sprite = this.sprite;
+		World world = this.world;
+		if(sprite != null && world != null) {
+			sprite.useClockOf(world);	// So an Animation's hitbox follows the world it is checked in
+		}
+		Shape local = this.getShape();
+		CollisionGeometry out = geometry;
+		if(out == null || !out.matches(x, y, rotation, rotationMode, local)) {
+			out = new CollisionGeometry(x, y, rotation, rotationMode, local,
+					getTransform(x, y, rotation, rotationMode));
+			geometry = out;
+			this.queueRehash();
+		}
+		return out;
+	}
+	
+	/**
+	 * Asks the {@linkplain World} to move this Entity to the {@linkplain SpatialHash} cells matching its geometry
+	 * before the next collision query, since they may no longer match
+	 */
+	private void queueRehash() {
+		World world = this.world;
+		if(hashed && !rehashPending && world != null) {
+			rehashPending = true;
+			world.rehashLater(this);
+		}
 	}
 	
 	public Shape getShape() {
@@ -252,6 +447,80 @@ public abstract class Entity {
 		}
 	}
 	
+	/**
+	 * Sets the layer this {@linkplain Entity} is drawn in. Layers are drawn from lowest to highest, so Entities in
+	 * higher layers appear on top of those in lower ones, and Entities in the same layer are drawn in the order they
+	 * were added. If unspecified, an Entity is in layer 0.
+	 * @param layer The desired layer
+	 * @see World#setLayerStatic(int, boolean)
+	 */
+	public void setLayer(int layer) {
+		if(layer != this.layer) {
+			if(world != null && slot >= 0) {
+				world.moveLayer(this, this.layer, layer);
+			}
+			this.layer = layer;
+		}
+	}
+	
+	/**
+	 * Returns the layer this {@linkplain Entity} is drawn in
+	 * @return This Entity's layer
+	 * @see Entity#setLayer(int)
+	 */
+	public int getLayer() {
+		return layer;
+	}
+	
+	/**
+	 * Marks this {@linkplain Entity} as changed, so that if it is in a {@linkplain World#setLayerStatic(int, boolean)
+	 * static layer}, the layer is drawn again in the next frame. Has no effect on Entities in other layers, which are
+	 * drawn every frame anyway.
+	 */
+	public void invalidate() {
+		if(world != null) {
+			world.invalidateLayer(layer);
+		}
+	}
+	
+	/**
+	 * Discards this {@linkplain Entity Entity's} collision geometry, so it is rebuilt from the current
+	 * {@linkplain Entity#getShape() shape} the next time a collision is checked. Only needed after changing a shape
+	 * in place rather than assigning a new one, since any other change is noticed automatically.
+	 * @see Entity#shape
+	 */
+	public void invalidateGeometry() {
+		geometry = null;
+		this.queueRehash();
+	}
+	
+	/**
+	 * Returns the area this {@linkplain Entity} draws over, relative to its position and before it is rotated, which
+	 * the {@linkplain World} uses to skip drawing Entities which are entirely off screen. If this returns {@code null},
+	 * the Entity is always drawn.
+	 * <br><br>
+	 * By default, this is the area of the {@linkplain Entity#sprite sprite}, or else the {@linkplain Entity#shape shape},
+	 * for Entities which draw normally, and {@code null} for Entities which override {@linkplain Entity#paint(Graphics)}
+	 * or {@linkplain Entity#rawPaint(Graphics)}. Entities which override those can override this as well, to be skipped
+	 * when off screen.
+	 * @return The bounds of what this Entity draws, or {@code null} if they are unknown
+	 */
+	public Rectangle2D getDrawBounds() {
+		if(customPaint.get(getClass())) {
+			return null;
+		} else if(sprite != null) {
+			return sprite.getBounds();
+		} else if(shape != null) {
+			if(drawBoundsShape != shape) {
+				drawBounds = shape.getBounds2D();
+				drawBoundsShape = shape;
+			}
+			return drawBounds;
+		} else {
+			return new Rectangle();
+		}
+	}
+	
 	/**
 	 * Applies the appropriate transform to the passed {@linkplain Graphics} object, then passed it to
 	 * {@linkplain Entity#paint(Graphics)}.
@@ -262,10 +531,13 @@ public abstract class Entity {
 	 */
 	public void rawPaint(Graphics g) {
 		Graphics2D g2 = (Graphics2D) g.create();
-		g2.transform(this.getTransform());
-		this.paint(g2);
+		AffineTransform transform = this.getRenderTransform();
+		if(!this.paintPreRotated(g2, transform)) {
+			g2.transform(transform);
+			this.paint(g2);
+		}
 		if(Game.debugMode) {
-			Area hitArea = this.getCollisionArea();
+			Area hitArea = this.getGeometry().getArea();
 			g2 = (Graphics2D)g.create();
 			Color toFill = (color != null)?color:Color.RED;
 			g2.setColor(toFill);
@@ -286,8 +558,9 @@ public abstract class Entity {
 	public void paint(Graphics g) {
 		Graphics2D g2 = (Graphics2D) g;
 		if(sprite != null) {
-			BufferedImage image = sprite.getImage();
-			g2.drawImage(image, -image.getWidth()/2, -image.getHeight()/2, null);
+			Sprite frame = sprite.currentFrame();
+			BufferedImage image = frame.getImage();
+			frame.draw(g2, -image.getWidth()/2, -image.getHeight()/2);
 		} else if(shape != null) {
 			g2.setColor(color);
 			if(fill) {
@@ -305,7 +578,17 @@ public abstract class Entity {
 	 * @return this Entity's rotation, in radians
 	 */
 	public double getRadians() {
-		this.rotation = Direction.normalizeDegrees(rotation);
-		return Math.toRadians(rotation);
+		return Math.toRadians(Direction.normalizeDegrees(rotation));
+	}
+	
+	/**
+	 * Brings {@linkplain Entity#rotation} back within {@code (-180,180]}, called by the {@linkplain World} after each
+	 * update on the thread which ran it, so no other thread ever writes to the Entity
+	 */
+	final void normalizeRotation() {
+		double rotation = this.rotation;
+		if(!(rotation > -180 && rotation <= 180)) {
+			this.rotation = Direction.normalizeDegrees(rotation);
+		}
 	}
 }
@@ -0,0 +1,175 @@
+package jgame;
+
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Keeps {@linkplain Entity Entities} which have been removed from the {@linkplain World}, so they can be added again
+ * instead of creating new ones. Games which spawn and discard many short lived Entities, such as bullets or
+ * particles, can use a pool to avoid creating garbage for every one.
+ * <br><br>
+ * An Entity taken from a pool goes back to it once it is removed from the world, after its
+ * {@linkplain Entity#reset()} is called. Adding it to the world again calls {@linkplain Entity#setup()} as usual, so
+ * setup should set everything the Entity depends on, rather than relying on field initializers.
+ * <br><br>
+ * Example usage:
+ * <br>{@code EntityPool<Bullet> bullets = new EntityPool<>(Bullet::new);}
+ * <br>{@code world.add(bullets.acquire(), x, y);}
+ * <br>{@code ...}
+ * <br>{@code world.remove(bullet);	// Returns it to the pool}
+ * @param <T> The type of Entity in the pool
+ */
+public class EntityPool<T extends Entity> {
+	
+	private final Supplier<? extends T> factory;
+	private final int maxSize;
+	private final ArrayList<T> available = new ArrayList<>();
+	private long created, reused, released, discarded;
+	
+	/**
+	 * Creates an empty {@linkplain EntityPool}, which creates new {@linkplain Entity Entities} with {@code factory}
+	 * whenever it has none to reuse, and keeps every Entity returned to it
+	 * @param factory Creates a new Entity for the pool
+	 */
+	public EntityPool(Supplier<? extends T> factory) {
+		this(factory, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Creates an empty {@linkplain EntityPool}, which creates new {@linkplain Entity Entities} with {@code factory}
+	 * whenever it has none to reuse, and keeps at most {@code maxSize} Entities waiting to be reused, leaving any
+	 * more to be garbage collected
+	 * @param factory Creates a new Entity for the pool
+	 * @param maxSize The most Entities to keep
+	 */
+	public EntityPool(Supplier<? extends T> factory, int maxSize) {
+		if(maxSize < 0) {
+			throw new IllegalArgumentException("Pool size cannot be negative");
+		}
+		this.factory = factory;
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Returns an {@linkplain Entity} from the pool, or a new one if the pool is empty. The Entity is not in any
+	 * {@linkplain World}, and will return to this pool when it is removed from the world it is added to.
+	 * @return An Entity ready to be added to a world
+	 */
+	public synchronized T acquire() {
+		T e;
+		if(available.isEmpty()) {
+			e = factory.get();
+			created++;
+		} else {
+			e = available.remove(available.size() - 1);
+			e.pooled = false;
+			reused++;
+		}
+		e.pool = this;
+		return e;
+	}
+	
+	/**
+	 * Fills the pool with new {@linkplain Entity Entities} until it holds at least {@code count}, so they are
+	 * created before the game starts rather than while it is running
+	 * @param count The number of Entities the pool should hold
+	 */
+	public synchronized void prefill(int count) {
+		count = Math.min(count, maxSize);
+		available.ensureCapacity(count);
+		while(available.size() < count) {
+			T e = factory.get();
+			e.pooled = true;
+			available.add(e);
+			created++;
+		}
+	}
+	
+	/**
+	 * Returns an {@linkplain Entity} to the pool, calling its {@linkplain Entity#reset()}. Entities taken from a pool
+	 * are returned automatically once they are removed from the {@linkplain World}, so this is only needed for one
+	 * which was {@linkplain EntityPool#acquire() acquired} but never added. Returning an Entity which is already in
+	 * the pool does nothing.
+	 * @param e The Entity to return
+	 * @throws IllegalStateException If the Entity is still in a world
+	 */
+	public void release(T e) {
+		if(e.slot >= 0) {
+			throw new IllegalStateException("Entity must be removed from the world before it is released");
+		}
+		recycle(e);
+	}
+	
+	/**
+	 * Resets the specified Entity and keeps it to be reused, called by the {@linkplain World} once it is removed
+	 */
+	void recycle(Entity e) {
+		synchronized(this) {
+			if(e.pooled || e.pool != this) {
+				return;
+			}
+			e.pooled = true;
+		}
+		e.reset();
+		e.world = null;
+		synchronized(this) {
+			released++;
+			if(available.size() < maxSize) {
+				@SuppressWarnings("unchecked")
+				T entity = (T)e;	// Only Entities acquired from this pool belong to it
+				available.add(entity);
+			} else {
+				discarded++;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of {@linkplain Entity Entities} waiting in the pool to be reused
+	 * @return The number of pooled Entities
+	 */
+	public synchronized int getAvailableCount() {
+		return available.size();
+	}
+	
+	/**
+	 * Returns the number of {@linkplain Entity Entities} the pool has created, because it had none to reuse or
+	 * while being {@linkplain EntityPool#prefill(int) filled}
+	 * @return The number of Entities created
+	 */
+	public synchronized long getCreatedCount() {
+		return created;
+	}
+	
+	/**
+	 * Returns the number of times {@linkplain EntityPool#acquire()} returned an Entity from the pool, rather than a
+	 * new one
+	 * @return The number of Entities reused
+	 */
+	public synchronized long getReusedCount() {
+		return reused;
+	}
+	
+	/**
+	 * Returns the number of {@linkplain Entity Entities} returned to the pool
+	 * @return The number of Entities released
+	 */
+	public synchronized long getReleasedCount() {
+		return released;
+	}
+	
+	/**
+	 * Returns the number of {@linkplain Entity Entities} returned to the pool while it was full, which were left to
+	 * be garbage collected
+	 * @return The number of Entities discarded
+	 */
+	public synchronized long getDiscardedCount() {
+		return discarded;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("%d available, %d created, %d reused, %d released, %d discarded",
+				available.size(), created, reused, released, discarded);
+	}
+}
@@ -0,0 +1,95 @@
+package jgame;
+
+/**
+ * Measures how evenly frames are shown on screen, by recording the time each frame is presented. Used to compare
+ * the pacing of the {@linkplain Game.RenderMode render modes}.
+ * @see World#getFrameStats()
+ */
+public class FrameStats {
+	
+	private long lastNanos = -1;
+	private long frames;
+	private double sum, sumSquares;
+	private long max;
+	
+	FrameStats() {
+		
+	}
+	
+	/**
+	 * Records that a frame was presented at the specified time
+	 * @param nanos The time, from {@linkplain System#nanoTime()}
+	 */
+	synchronized void record(long nanos) {
+		if(lastNanos >= 0) {
+			long interval = nanos - lastNanos;
+			frames++;
+			sum += interval;
+			sumSquares += (double)interval * interval;
+			max = Math.max(max, interval);
+		}
+		lastNanos = nanos;
+	}
+	
+	/**
+	 * Returns the number of frame intervals measured since the last {@linkplain FrameStats#reset() reset}
+	 * @return The number of frames measured
+	 */
+	public synchronized long getFrameCount() {
+		return frames;
+	}
+	
+	/**
+	 * Returns the average time between frames, in milliseconds
+	 * @return The mean frame interval, or 0 if no frames have been measured
+	 */
+	public synchronized double getAverageMillis() {
+		return (frames > 0) ? sum / frames / 1e6 : 0;
+	}
+	
+	/**
+	 * Returns the jitter of the frame intervals, measured as their standard deviation, in milliseconds. Perfectly
+	 * even frames have a jitter of 0.
+	 * @return The standard deviation of the frame interval, or 0 if no frames have been measured
+	 */
+	public synchronized double getJitterMillis() {
+		if(frames == 0) {
+			return 0;
+		}
+		double mean = sum / frames;
+		return Math.sqrt(Math.max(0, sumSquares / frames - mean * mean)) / 1e6;
+	}
+	
+	/**
+	 * Returns the longest time between two frames, in milliseconds
+	 * @return The longest frame interval, or 0 if no frames have been measured
+	 */
+	public synchronized double getMaxMillis() {
+		return max / 1e6;
+	}
+	
+	/**
+	 * Returns the average number of frames presented per second
+	 * @return The measured framerate, or 0 if no frames have been measured
+	 */
+	public synchronized double getFramesPerSecond() {
+		return (sum > 0) ? frames * 1e9 / sum : 0;
+	}
+	
+	/**
+	 * Discards all measurements, so the statistics only cover frames from now on
+	 */
+	public synchronized void reset() {
+		lastNanos = -1;
+		frames = 0;
+		sum = 0;
+		sumSquares = 0;
+		max = 0;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("%.1f fps, average %.2f ms, jitter %.2f ms, max %.2f ms",
+				getFramesPerSecond(), getAverageMillis(), getJitterMillis(), getMaxMillis());
+	}
+}
@@ -2,6 +2,15 @@ package jgame;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
 
 public abstract class Game {
 	
@@ -39,12 +48,76 @@ public abstract class Game {
 	 */
 	public World world;
 	
+	/**
+	 * Options for what drives the game's updates
+	 * @see LoopMode#TIMER
+	 * @see LoopMode#FIXED_STEP
+	 */
+	public enum LoopMode {
+		/**
+		 * Updates are run by a {@linkplain Timer Swing Timer} on the event dispatch thread, with a delay rounded to the
+		 * nearest millisecond. This is the default.
+		 */
+		TIMER,
+		/**
+		 * Updates are run on a dedicated thread at a fixed rate measured with {@linkplain System#nanoTime()}. If the
+		 * game falls behind, it runs several updates in a row to catch up, up to a limit, and the {@linkplain World}
+		 * is drawn between updates by placing each {@linkplain Entity} part way between its last two positions.
+		 */
+		FIXED_STEP
+	}
+	
+	/**
+	 * Options for how the game's window is drawn
+	 * @see RenderMode#PASSIVE
+	 * @see RenderMode#ACTIVE
+	 */
+	public enum RenderMode {
+		/**
+		 * The window is repainted by Swing, which schedules and may merge repaint requests, on the event dispatch
+		 * thread. This is the default.
+		 */
+		PASSIVE,
+		/**
+		 * The window is drawn directly by the game loop into a back buffer, which is shown as soon as it is complete.
+		 * This gives more even frame pacing, especially with {@linkplain LoopMode#FIXED_STEP}.
+		 */
+		ACTIVE
+	}
+	
+	/** The most updates a {@linkplain LoopMode#FIXED_STEP fixed step} loop will run in a row before drawing */
+	static final int MAX_CATCH_UP = 5;
+	/** The longest a {@linkplain LoopMode#FIXED_STEP fixed step} loop will wait between drawing */
+	private static final long FRAME_NANOS = 1_000_000_000L / 120;
+	
 	private final JFrame frame;
 	private Timer gameClock;
+	private Thread gameThread;
+	private LoopMode loopMode = LoopMode.TIMER;
+	private RenderMode renderMode = RenderMode.PASSIVE;
+	private volatile long stepNanos = 20_000_000L;
 	private boolean setupDone;
 	
+	/** Identifies input recordings, followed by their format version */
+	private static final int RECORDING_MAGIC = 0x4A47524E, RECORDING_VERSION = 1;
+	private static Thread recordingHook;
+	
+	/**
+	 * Creates a game in a new window, unless the environment has no display, in which case the game is
+	 * {@linkplain Game#Game(boolean) headless}
+	 */
 	public Game() {
-		world = new World();
+		this(GraphicsEnvironment.isHeadless());
+	}
+	
+	/**
+	 * Creates a game, which is either shown in a new window, or, if {@code headless} is {@code true}, has no window
+	 * at all. A headless game cannot be {@linkplain Game#start() started}; instead, it is run by calling
+	 * {@linkplain Game#step(int)}, which runs updates as fast as possible.
+	 * @param headless Whether to create the game without a window
+	 */
+	protected Game(boolean headless) {
+		world = new World(headless);
 		frame = world.getFrame();
 	}
 	
@@ -54,8 +127,10 @@ public abstract class Game {
 	 */
 	public final void setWindowSize(Dimension size) {
 		world.frameSize = size;
-		frame.pack();
-		frame.setLocationRelativeTo(null);
+		if(frame != null) {
+			frame.pack();
+			frame.setLocationRelativeTo(null);
+		}
 	}
 	
 	/**
@@ -63,17 +138,36 @@ public abstract class Game {
 	 * @param visible The desired visibility of the window
 	 */
 	public final void setVisible(boolean visible) {
+		setupOnce();
+		if(frame != null) {
+			frame.setVisible(visible);
+		}
+	}
+	
+	private void setupOnce() {
 		if(!setupDone) {
 			setupDone = true;
 			setup();
 		}
-		frame.setVisible(visible);
 	}
 	
 	/**
 	 * Starts the game
 	 */
 	public final void start() {
+		if(world.isHeadless()) {
+			throw new IllegalStateException("A headless game has no window to start; use step(int) to run it");
+		}
+		if(loopMode == LoopMode.FIXED_STEP) {
+			if(gameThread == null) {
+				gameThread = new Thread(this::runFixedStep, "JGame Loop");
+				gameThread.setDaemon(true);
+				setVisible(true);
+				world.interpolate = true;
+				gameThread.start();
+			}
+			return;
+		}
 		if(gameClock == null) {
 			this.setupTimer();
 		}
@@ -81,13 +175,215 @@ public abstract class Game {
 		gameClock.start();
 	}
 	
+	/**
+	 * Runs the specified number of updates immediately, one after another, on the calling thread, without waiting
+	 * for the {@linkplain Game#setFramerate(double) framerate}. If the game has not been set up yet, this sets it up
+	 * first. This is the way to run a {@linkplain Game#Game(boolean) headless} game, but it works on any game which
+	 * has not been {@linkplain Game#start() started}.
+	 * @param updates The number of updates to run
+	 */
+	public final void step(int updates) {
+		setupOnce();
+		for(int i = 0; i < updates; i++) {
+			tick();
+		}
+	}
+	
+	/**
+	 * Records the input of every update, along with the seed of the world's {@linkplain World#getRandom() random
+	 * number generator}, to the specified file, so the game can later be {@linkplain Game#replay(File) replayed}
+	 * exactly, such as to measure the same workload across builds. This must be called before the game is
+	 * set up. The recording is finished by {@linkplain Game#stopRecording()}, or when the program exits.
+	 * @param file The file to record to
+	 * @throws IOException If the file cannot be written
+	 */
+	public final void record(File file) throws IOException {
+		checkNotSetUp();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(RECORDING_MAGIC);
+			out.writeByte(RECORDING_VERSION);
+			out.writeLong(world.getSeed());
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+		synchronized(Game.class) {
+			if(recordingHook == null) {
+				recordingHook = new Thread(Controller::stopRecording, "JGame Recording");
+				Runtime.getRuntime().addShutdownHook(recordingHook);
+			}
+		}
+		world.resetAnimationClock();
+		Controller.startRecording(out);
+	}
+	
+	/**
+	 * Finishes the current {@linkplain Game#record(File) recording}, if there is one
+	 */
+	public final void stopRecording() {
+		Controller.stopRecording();
+	}
+	
+	/**
+	 * Plays back a {@linkplain Game#record(File) recording}, feeding its input to the game in place of the keyboard
+	 * and mouse, one update at a time, until it runs out. The world's random number generator is restored to the seed
+	 * it had when the game was recorded. This must be called before the game is set up.
+	 * <br><br>
+	 * A replay runs at whatever speed the game is run at, so a {@linkplain Game#Game(boolean) headless} game can
+	 * replay a recording as fast as possible:
+	 * <br>{@code game.replay(file);}
+	 * <br>{@code while(game.isReplaying()) game.step(1);}
+	 * @param file The recording to play
+	 * @throws IOException If the file cannot be read, or is not a recording
+	 */
+	public final void replay(File file) throws IOException {
+		checkNotSetUp();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != RECORDING_MAGIC || in.readByte() != RECORDING_VERSION) {
+				throw new IOException(file + " is not an input recording");
+			}
+			world.setSeed(in.readLong());
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		world.resetAnimationClock();
+		Controller.startReplay(in);
+	}
+	
+	/**
+	 * Returns whether a {@linkplain Game#replay(File) replay} is still feeding input to the game
+	 * @return Whether a replay is running
+	 */
+	public final boolean isReplaying() {
+		return Controller.isReplaying();
+	}
+	
+	private void checkNotSetUp() {
+		if(setupDone) {
+			throw new IllegalStateException("Recording and replaying must begin before the game is set up");
+		}
+	}
+	
+	/**
+	 * Sets what drives the game's updates. This must be called before the game {@linkplain Game#start() starts}.
+	 * If unspecified, defaults to {@linkplain LoopMode#TIMER}.
+	 * @param mode The desired loop mode
+	 */
+	public final void setLoopMode(LoopMode mode) {
+		if(gameThread != null || (gameClock != null && gameClock.isRunning())) {
+			throw new IllegalStateException("The loop mode cannot be changed once the game has started");
+		}
+		this.loopMode = mode;
+	}
+	
+	/**
+	 * Returns what drives the game's updates
+	 * @return The current loop mode
+	 * @see Game#setLoopMode(LoopMode)
+	 */
+	public final LoopMode getLoopMode() {
+		return loopMode;
+	}
+	
+	/**
+	 * Sets how the game's window is drawn. This must be called before the window is shown. If unspecified, defaults
+	 * to {@linkplain RenderMode#PASSIVE}.
+	 * @param mode The desired render mode
+	 * @see World#getFrameStats()
+	 */
+	public final void setRenderMode(RenderMode mode) {
+		if(frame != null && frame.isVisible()) {
+			throw new IllegalStateException("The render mode cannot be changed once the window is shown");
+		}
+		this.renderMode = mode;
+		world.setRenderMode(mode);
+	}
+	
+	/**
+	 * Returns how the game's window is drawn
+	 * @return The current render mode
+	 * @see Game#setRenderMode(RenderMode)
+	 */
+	public final RenderMode getRenderMode() {
+		return renderMode;
+	}
+	
 	private void setupTimer() {
 		gameClock = new Timer(20,event->{
+			tick();
+			world.paint();
+		});
+	}
+	
+	/**
+	 * Runs a single update of the controller, the game, and the world, and moves the clock the world's
+	 * {@linkplain Animation Animations} are played against forward by one update
+	 */
+	private void tick() {
+		synchronized(world.lock) {
+			world.advanceAnimationClock(stepNanos);
 			Controller.refresh();
 			this.update();
 			world.update();
-			world.paint();
-		});
+		}
+	}
+	
+	private void runFixedStep() {
+		long step = stepNanos;
+		long next = System.nanoTime();
+		while(true) {
+			long now = System.nanoTime();
+			if(step != stepNanos) {	// The framerate changed, so start counting from now
+				step = stepNanos;
+				next = now;
+			}
+			world.tickNanos = step;
+			next = runDueUpdates(now, next, step);
+			try {
+				world.paint();
+			} catch(RuntimeException e) {
+				report(e);
+			}
+			long wait = Math.min(next - System.nanoTime(), FRAME_NANOS);
+			if(wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+		}
+	}
+	
+	/**
+	 * Runs every update of the fixed-step loop scheduled at or before {@code now}, the first of which is scheduled at
+	 * {@code next}, up to {@linkplain Game#MAX_CATCH_UP} of them, skipping the rest if the loop is too far behind to
+	 * catch up. A {@linkplain RuntimeException} thrown by an update is reported, and the loop moves on to the next
+	 * update. An {@linkplain Error} is not caught, so it ends the loop, since the world may be left half updated.
+	 * @return When the next update is scheduled
+	 */
+	long runDueUpdates(long now, long next, long step) {
+		for(int ticks = 0; now - next >= 0 && ticks < MAX_CATCH_UP; ticks++) {
+			world.scheduledTickNanos = next;
+			try {
+				tick();
+			} catch(RuntimeException e) {
+				report(e);
+			}
+			next += step;
+		}
+		if(now - next >= 0) {	// Too far behind to catch up, so skip the missed updates
+			next = now;
+		}
+		return next;
+	}
+	
+	/**
+	 * Reports an exception thrown by an update or a paint of the game loop, the same way the event dispatch thread
+	 * reports one thrown by the {@linkplain Timer}, so the game carries on with its next update rather than stopping
+	 */
+	private static void report(RuntimeException e) {
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
 	}
 	
 	/**
@@ -102,8 +398,10 @@ public abstract class Game {
 		int delay;
 		if(fps > 0) {
 			delay = (int)(1000/fps);
+			stepNanos = Math.max(1, (long)(1_000_000_000L/fps));
 		} else {
 			delay = Integer.MAX_VALUE;
+			stepNanos = Long.MAX_VALUE / 4;
 		}
 		gameClock.setDelay(delay);
 	}
@@ -119,5 +417,5 @@ public abstract class Game {
 	 * of the game. This is where any game logic (like Entity spawning, movement, or collisions) should happen.
 	 */
 	protected abstract void update();
-
+	
 }
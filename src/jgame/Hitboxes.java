@@ -0,0 +1,475 @@
+package jgame;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Generates polygon hitboxes for {@linkplain Sprite Sprites} from the solid pixels of their images, so they do not
+ * have to be drawn by hand. The outline of the solid pixels is traced, then simplified to at most a given number
+ * of vertices.
+ * <br><br>
+ * Tracing is done once per image and cached. To avoid tracing at all when the game starts, the hitboxes can be
+ * generated ahead of time by running this class, and loaded with {@linkplain Hitboxes#load(Sprite, String, Mode, int)}:
+ * <br>{@code java jgame.Hitboxes <image> <rows> <cols> <OUTLINE|CONVEX_HULL> <maxVertices> <output file>}
+ */
+public final class Hitboxes {
+	
+	/**
+	 * Options for the shape of a generated hitbox
+	 * @see Mode#OUTLINE
+	 * @see Mode#CONVEX_HULL
+	 */
+	public enum Mode {
+		/**
+		 * Follows the outline of the largest solid area of the image, including any dents. Hitboxes which are not
+		 * convex are slower to test for collisions.
+		 */
+		OUTLINE,
+		/**
+		 * The smallest convex shape around every solid pixel of the image, which is tested for collisions much faster
+		 * than an outline, but also covers any gaps
+		 */
+		CONVEX_HULL
+	}
+	
+	/** Pixels with at least this alpha are solid */
+	private static final int ALPHA_THRESHOLD = 128;
+	
+	/** Every traced hitbox, by image and then by mode and vertex count */
+	private static final Map<BufferedImage, Map<String, Polygon>> cache = new WeakHashMap<>();
+	
+	private Hitboxes() {}
+	
+	/**
+	 * Returns a polygon around the solid pixels of the specified image, with at most {@code maxVertices} vertices,
+	 * centered about (0,0) in the same way {@linkplain Sprite#getShape()} is. The result is cached, and shared by
+	 * every call with the same arguments, so it must not be modified.
+	 * @param image The image to trace
+	 * @param mode The kind of polygon to make
+	 * @param maxVertices The most vertices the polygon may have, at least 3
+	 * @return The traced polygon, or {@code null} if the image has no solid pixels
+	 */
+	public static Polygon trace(BufferedImage image, Mode mode, int maxVertices) {
+		if(maxVertices < 3) {
+			throw new IllegalArgumentException("A hitbox needs at least 3 vertices");
+		}
+		String key = mode + ":" + maxVertices;
+		synchronized(cache) {
+			Map<String, Polygon> traced = cache.get(image);
+			if(traced != null && traced.containsKey(key)) {
+				return traced.get(key);
+			}
+		}
+		Polygon out = build(image, mode, maxVertices);
+		synchronized(cache) {
+			cache.computeIfAbsent(image, i -> new HashMap<>()).put(key, out);
+		}
+		return out;
+	}
+	
+	/**
+	 * Sets the hitbox of the specified {@linkplain Sprite}, and of each of its frames if it is divided or is an
+	 * {@linkplain Animation}, to a polygon {@linkplain Hitboxes#trace(BufferedImage, Mode, int) traced} from its
+	 * image. Frames with no solid pixels keep their current hitbox.
+	 * @param sprite The Sprite to set hitboxes for
+	 * @param mode The kind of polygon to make
+	 * @param maxVertices The most vertices each polygon may have, at least 3
+	 */
+	public static void apply(Sprite sprite, Mode mode, int maxVertices) {
+		for(Sprite frame : framesOf(sprite)) {
+			Polygon hitbox = trace(frame.getImage(), mode, maxVertices);
+			if(hitbox != null) {
+				frame.setHitbox(hitbox);
+			}
+		}
+		if(!(sprite instanceof Animation) && sprite.getSprite(0) != sprite) {
+			sprite.setHitbox(sprite.getSprite(0).getShape());
+		}
+	}
+	
+	/**
+	 * Writes the hitboxes of the specified {@linkplain Sprite Sprite's} frames, one frame per line, in a form which
+	 * can be read back by {@linkplain Hitboxes#read(Sprite, Reader)}. Only polygon hitboxes are written; frames with
+	 * any other hitbox are written as blank lines.
+	 * @param sprite The Sprite whose hitboxes to write
+	 * @param out Where to write the hitboxes
+	 * @throws IOException If the hitboxes cannot be written
+	 */
+	public static void write(Sprite sprite, Writer out) throws IOException {
+		for(Sprite frame : framesOf(sprite)) {
+			if(frame.getShape() instanceof Polygon polygon) {
+				for(int i = 0; i < polygon.npoints; i++) {
+					out.write((i > 0 ? " " : "") + polygon.xpoints[i] + "," + polygon.ypoints[i]);
+				}
+			}
+			out.write(System.lineSeparator());
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Sets the hitboxes of the specified {@linkplain Sprite Sprite's} frames from lines written by
+	 * {@linkplain Hitboxes#write(Sprite, Writer)}. Blank lines leave that frame's hitbox unchanged.
+	 * @param sprite The Sprite to set hitboxes for
+	 * @param in Where to read the hitboxes from
+	 * @throws IOException If the hitboxes cannot be read, or do not match the Sprite's frames
+	 */
+	public static void read(Sprite sprite, Reader in) throws IOException {
+		List<Sprite> frames = framesOf(sprite);
+		BufferedReader reader = new BufferedReader(in);
+		int index = 0;
+		for(String line = reader.readLine(); line != null; line = reader.readLine(), index++) {
+			if(index >= frames.size()) {
+				throw new IOException("More hitboxes than frames");
+			}
+			line = line.trim();
+			if(line.isEmpty()) {
+				continue;
+			}
+			Polygon polygon = new Polygon();
+			try {
+				for(String point : line.split("\\s+")) {
+					String[] xy = point.split(",");
+					polygon.addPoint(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+				}
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Malformed hitbox on line " + (index + 1), e);
+			}
+			frames.get(index).setHitbox(polygon);
+		}
+		if(index != frames.size()) {
+			throw new IOException("Expected " + frames.size() + " hitboxes, found " + index);
+		}
+		if(!(sprite instanceof Animation) && sprite.getSprite(0) != sprite) {
+			sprite.setHitbox(sprite.getSprite(0).getShape());
+		}
+	}
+	
+	/**
+	 * Sets the hitboxes of the specified {@linkplain Sprite Sprite's} frames from a resource written ahead of time,
+	 * found the same way as images, or, if there is no such resource or it cannot be read, by
+	 * {@linkplain Hitboxes#apply(Sprite, Mode, int) tracing} them now
+	 * @param sprite The Sprite to set hitboxes for
+	 * @param resource The name of the file the hitboxes were written to
+	 * @param mode The kind of polygon to make, if tracing
+	 * @param maxVertices The most vertices each polygon may have, if tracing
+	 */
+	public static void load(Sprite sprite, String resource, Mode mode, int maxVertices) {
+		InputStream input = ClassLoader.getSystemResourceAsStream(resource);
+		if(input != null) {
+			try(Reader reader = new InputStreamReader(input)) {
+				read(sprite, reader);
+				return;
+			} catch (IOException e) {
+				System.err.println("Failed to read file: "+resource);
+				e.printStackTrace();
+			}
+		}
+		apply(sprite, mode, maxVertices);
+	}
+	
+	/**
+	 * Traces the hitboxes of a sprite sheet and writes them to a file, so they can be
+	 * {@linkplain Hitboxes#load(Sprite, String, Mode, int) loaded} instead of traced when the game starts
+	 * @param args The image, its rows and columns, the {@linkplain Mode}, the most vertices, and the output file
+	 * @throws IOException If the hitboxes cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 6) {
+			System.err.println("Usage: java jgame.Hitboxes <image> <rows> <cols> <OUTLINE|CONVEX_HULL> <maxVertices> <output file>");
+			System.exit(1);
+		}
+		BufferedImage image = Images.getImage(args[0]);
+		if(image == null) {
+			System.exit(1);
+		}
+		Sprite sprite = new Sprite(image, Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		apply(sprite, Mode.valueOf(args[3]), Integer.parseInt(args[4]));
+		try(Writer out = new FileWriter(args[5])) {
+			write(sprite, out);
+		}
+	}
+	
+	private static List<Sprite> framesOf(Sprite sprite) {
+		List<Sprite> out = new ArrayList<>();
+		if(sprite instanceof Animation animation) {
+			for(int i = 0; i < animation.getFrameCount(); i++) {
+				out.add(animation.getFrame(i));
+			}
+		} else {
+			for(Sprite frame : sprite) {
+				out.add(frame);
+			}
+		}
+		return out;
+	}
+	
+	private static Polygon build(BufferedImage image, Mode mode, int maxVertices) {
+		int width = image.getWidth(), height = image.getHeight();
+		boolean[] solid = new boolean[width * height];
+		int[] row = new int[width];
+		boolean any = false;
+		for(int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for(int x = 0; x < width; x++) {
+				solid[y * width + x] = row[x] >>> 24 >= ALPHA_THRESHOLD;
+				any |= solid[y * width + x];
+			}
+		}
+		if(!any) {
+			return null;
+		}
+		int[] points = (mode == Mode.CONVEX_HULL) ? hull(solid, width, height) : outline(largestRegion(solid, width, height), width, height);
+		points = simplify(points, maxVertices);
+		Polygon out = new Polygon();
+		for(int i = 0; i < points.length; i += 2) {
+			out.addPoint(points[i] - width/2, points[i+1] - height/2);
+		}
+		return out;
+	}
+	
+	/**
+	 * Returns only the pixels of the largest connected solid area
+	 */
+	private static boolean[] largestRegion(boolean[] solid, int width, int height) {
+		int[] label = new int[solid.length];
+		int[] stack = new int[solid.length];
+		int best = 0, bestSize = 0, next = 0;
+		for(int start = 0; start < solid.length; start++) {
+			if(!solid[start] || label[start] != 0) {
+				continue;
+			}
+			next++;
+			int size = 0, top = 0;
+			stack[top++] = start;
+			label[start] = next;
+			while(top > 0) {
+				int p = stack[--top];
+				size++;
+				int x = p % width, y = p / width;
+				if(x > 0 && solid[p-1] && label[p-1] == 0) { label[p-1] = next; stack[top++] = p-1; }
+				if(x < width-1 && solid[p+1] && label[p+1] == 0) { label[p+1] = next; stack[top++] = p+1; }
+				if(y > 0 && solid[p-width] && label[p-width] == 0) { label[p-width] = next; stack[top++] = p-width; }
+				if(y < height-1 && solid[p+width] && label[p+width] == 0) { label[p+width] = next; stack[top++] = p+width; }
+			}
+			if(size > bestSize) {
+				best = next;
+				bestSize = size;
+			}
+		}
+		boolean[] out = new boolean[solid.length];
+		for(int i = 0; i < solid.length; i++) {
+			out[i] = label[i] == best;
+		}
+		return out;
+	}
+	
+	/**
+	 * Follows the edges of the pixels around the outside of a single connected area, keeping the area on the right,
+	 * and returns the corners where the outline turns, as {@code x0, y0, x1, y1, ...}
+	 */
+	private static int[] outline(boolean[] solid, int width, int height) {
+		int first = 0;
+		while(!solid[first]) {
+			first++;
+		}
+		// Directions in clockwise order: right, down, left, up
+		int[] dx = {1, 0, -1, 0}, dy = {0, 1, 0, -1};
+		int startX = first % width, startY = first / width;
+		int x = startX, y = startY, dir = 0;
+		int[] out = new int[16];
+		int count = 0;
+		do {
+			// The pixels ahead of this corner, to the left and right of the current direction
+			boolean left, right;
+			switch(dir) {
+				case 0 -> { left = at(solid, width, height, x, y-1); right = at(solid, width, height, x, y); }
+				case 1 -> { left = at(solid, width, height, x, y); right = at(solid, width, height, x-1, y); }
+				case 2 -> { left = at(solid, width, height, x-1, y); right = at(solid, width, height, x-1, y-1); }
+				default -> { left = at(solid, width, height, x-1, y-1); right = at(solid, width, height, x, y-1); }
+			}
+			int turn = !right ? 1 : left ? 3 : 0;
+			if(turn != 0 || count == 0) {
+				dir = (dir + turn) & 3;
+				if(2*count == out.length) {
+					out = Arrays.copyOf(out, out.length * 2);
+				}
+				out[2*count] = x;
+				out[2*count+1] = y;
+				count++;
+			}
+			x += dx[dir];
+			y += dy[dir];
+		} while(x != startX || y != startY);
+		return Arrays.copyOf(out, 2*count);
+	}
+	
+	private static boolean at(boolean[] solid, int width, int height, int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height && solid[y * width + x];
+	}
+	
+	/**
+	 * Returns the convex hull of the corners of every solid pixel, clockwise, as {@code x0, y0, x1, y1, ...}
+	 */
+	private static int[] hull(boolean[] solid, int width, int height) {
+		// Only the outermost pixels of each row can be on the hull
+		List<int[]> candidates = new ArrayList<>();
+		for(int y = 0; y < height; y++) {
+			int min = -1, max = -1;
+			for(int x = 0; x < width; x++) {
+				if(solid[y * width + x]) {
+					if(min < 0) {
+						min = x;
+					}
+					max = x;
+				}
+			}
+			if(min >= 0) {
+				candidates.add(new int[] {min, y});
+				candidates.add(new int[] {min, y+1});
+				candidates.add(new int[] {max+1, y});
+				candidates.add(new int[] {max+1, y+1});
+			}
+		}
+		candidates.sort((a, b) -> (a[0] != b[0]) ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+		// Monotone chain, keeping only strict turns: first the lower half, then back along the upper half
+		int[][] chain = new int[2 * candidates.size()][];
+		int k = 0;
+		for(int[] p : candidates) {
+			while(k >= 2 && cross(chain[k-2], chain[k-1], p) <= 0) {
+				k--;
+			}
+			chain[k++] = p;
+		}
+		for(int i = candidates.size() - 2, floor = k + 1; i >= 0; i--) {
+			int[] p = candidates.get(i);
+			while(k >= floor && cross(chain[k-2], chain[k-1], p) <= 0) {
+				k--;
+			}
+			chain[k++] = p;
+		}
+		k--;	// The last point is the first again
+		int[] out = new int[2*k];
+		for(int i = 0; i < k; i++) {
+			out[2*i] = chain[i][0];
+			out[2*i+1] = chain[i][1];
+		}
+		return out;
+	}
+	
+	private static long cross(int[] o, int[] a, int[] b) {
+		return (long)(a[0] - o[0]) * (b[1] - o[1]) - (long)(a[1] - o[1]) * (b[0] - o[0]);
+	}
+	
+	/**
+	 * Reduces a closed polygon to at most {@code maxVertices} vertices with the Douglas-Peucker algorithm, raising
+	 * the tolerance until it fits. Keeping a subset of a convex polygon's vertices keeps it convex. Always keeps at
+	 * least 3 vertices which are not in a line, unless every vertex of the polygon is.
+	 */
+	private static int[] simplify(int[] points, int maxVertices) {
+		if(maxVertices < 3) {
+			throw new IllegalArgumentException("A hitbox needs at least 3 vertices");
+		}
+		int n = points.length / 2;
+		if(n <= maxVertices) {
+			return points;
+		}
+		// Split the loop at the vertex furthest from the first, so each half is an open chain
+		int far = 0;
+		long farDistance = -1;
+		for(int i = 1; i < n; i++) {
+			long ddx = points[2*i] - points[0], ddy = points[2*i+1] - points[1];
+			if(ddx*ddx + ddy*ddy > farDistance) {
+				farDistance = ddx*ddx + ddy*ddy;
+				far = i;
+			}
+		}
+		boolean[] keep = new boolean[n];
+		for(double tolerance = 0.5; ; tolerance *= 1.5) {
+			Arrays.fill(keep, false);
+			keep[0] = keep[far] = true;
+			mark(points, n, 0, far, tolerance, keep);
+			mark(points, n, far, n, tolerance, keep);
+			int kept = 0;
+			for(boolean k : keep) {
+				kept += k ? 1 : 0;
+			}
+			if(kept <= maxVertices) {
+				if(kept < 3) {
+					// The tolerance has outgrown the polygon, leaving only the ends of the split. The vertex on each
+					// side furthest from the line between them is off that line, unless the whole polygon is on it.
+					int a = furthest(points, n, 0, far), b = furthest(points, n, far, n);
+					double da = (a < 0) ? 0 : distance(points, n, 0, far, a);
+					double db = (b < 0) ? 0 : distance(points, n, far, n, b);
+					if(da > 0 && (da >= db || maxVertices > 3)) {
+						keep[a] = true;
+						kept++;
+					}
+					if(db > 0 && (db > da || maxVertices > 3)) {
+						keep[b] = true;
+						kept++;
+					}
+				}
+				int[] out = new int[2*kept];
+				int j = 0;
+				for(int i = 0; i < n; i++) {
+					if(keep[i]) {
+						out[j++] = points[2*i];
+						out[j++] = points[2*i+1];
+					}
+				}
+				return out;
+			}
+		}
+	}
+	
+	/**
+	 * Keeps the vertex between {@code from} and {@code to} (which wraps to 0 at {@code n}) furthest from the line
+	 * between them, if it is further than {@code tolerance}, and repeats on each side of it
+	 */
+	private static void mark(int[] points, int n, int from, int to, double tolerance, boolean[] keep) {
+		int furthest = furthest(points, n, from, to);
+		if(furthest >= 0 && distance(points, n, from, to, furthest) > tolerance) {
+			keep[furthest] = true;
+			mark(points, n, from, furthest, tolerance, keep);
+			mark(points, n, furthest, to, tolerance, keep);
+		}
+	}
+	
+	/**
+	 * Returns the vertex between {@code from} and {@code to} (which wraps to 0 at {@code n}) furthest from the line
+	 * between them, or -1 if there are no vertices between them
+	 */
+	private static int furthest(int[] points, int n, int from, int to) {
+		int furthest = -1;
+		double furthestDistance = -1;
+		for(int i = from + 1; i < to; i++) {
+			double distance = distance(points, n, from, to, i);
+			if(distance > furthestDistance) {
+				furthest = i;
+				furthestDistance = distance;
+			}
+		}
+		return furthest;
+	}
+	
+	/**
+	 * Returns the distance of vertex {@code i} from the line between vertices {@code from} and {@code to}, or from
+	 * {@code from} if they are in the same place
+	 */
+	private static double distance(int[] points, int n, int from, int to, int i) {
+		double x1 = points[2*from], y1 = points[2*from+1];
+		double x2 = points[2*(to % n)], y2 = points[2*(to % n)+1];
+		double px = points[2*i], py = points[2*i+1];
+		double length = Math.hypot(x2 - x1, y2 - y1);
+		return (length == 0) ? Math.hypot(px - x1, py - y1)
+				: Math.abs((x2 - x1) * (y1 - py) - (x1 - px) * (y2 - y1)) / length;
+	}
+}
@@ -10,38 +10,444 @@ import java.awt.event.WindowEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.io.*;
 import java.net.URL;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Images {
 
-	private static final Map<String, BufferedImage> images = new HashMap<>();
+	/**
+	 * A group of images being loaded in the background by {@linkplain Images#preloadAsync(Collection)}, which can be
+	 * used to track their progress or wait for them to finish
+	 */
+	public static class Preload {
+		
+		private final int total;
+		private final AtomicInteger loaded = new AtomicInteger();
+		private final CompletableFuture<Void> future;
+		
+		private Preload(Collection<String> files) {
+			this.total = files.size();
+			CompletableFuture<?>[] parts = new CompletableFuture<?>[total];
+			int i = 0;
+			for(String file : files) {
+				parts[i++] = request(file).thenRun(loaded::incrementAndGet);
+			}
+			this.future = CompletableFuture.allOf(parts);
+		}
+		
+		/**
+		 * Returns the number of images which have finished loading
+		 * @return How many images are loaded
+		 */
+		public int getLoaded() {
+			return loaded.get();
+		}
+		
+		/**
+		 * Returns the number of images in this preload
+		 * @return How many images were requested
+		 */
+		public int getTotal() {
+			return total;
+		}
+		
+		/**
+		 * Returns the fraction of images which have finished loading, from 0 to 1
+		 * @return The progress of this preload
+		 */
+		public double getProgress() {
+			return (total == 0) ? 1 : loaded.get() / (double)total;
+		}
+		
+		/**
+		 * Returns whether every image has finished loading
+		 * @return Whether this preload is complete
+		 */
+		public boolean isDone() {
+			return future.isDone();
+		}
+		
+		/**
+		 * Waits until every image has finished loading
+		 */
+		public void join() {
+			future.join();
+		}
+		
+		/**
+		 * Returns a {@linkplain CompletableFuture} which completes once every image has finished loading, for
+		 * chaining further work
+		 * @return The future for this preload
+		 */
+		public CompletableFuture<Void> getFuture() {
+			return future;
+		}
+	}
+
+	/**
+	 * A snapshot of how well the image cache is working
+	 * @see Images#getCacheStats()
+	 */
+	public static class CacheStats {
+		
+		private final long hits, misses, evictions, bytes, budget;
+		private final int images;
+		
+		private CacheStats(long hits, long misses, long evictions, long bytes, long budget, int images) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.bytes = bytes;
+			this.budget = budget;
+			this.images = images;
+		}
+		
+		/**
+		 * Returns the number of requests for an image which was already cached
+		 * @return The number of cache hits
+		 */
+		public long getHits() {
+			return hits;
+		}
+		
+		/**
+		 * Returns the number of requests which had to decode an image, including images decoded again after being
+		 * evicted
+		 * @return The number of cache misses
+		 */
+		public long getMisses() {
+			return misses;
+		}
+		
+		/**
+		 * Returns the number of images dropped from the cache to stay within its budget
+		 * @return The number of evictions
+		 */
+		public long getEvictions() {
+			return evictions;
+		}
+		
+		/**
+		 * Returns the memory used by the decoded pixels of every cached image
+		 * @return The size of the cache, in bytes
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+		
+		/**
+		 * Returns the memory budget of the cache
+		 * @return The budget, in bytes
+		 * @see Images#setCacheBudget(long)
+		 */
+		public long getBudget() {
+			return budget;
+		}
+		
+		/**
+		 * Returns the number of images in the cache, including any still loading
+		 * @return The number of cached images
+		 */
+		public int getImageCount() {
+			return images;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%d images, %d/%d bytes, %d hits, %d misses, %d evictions",
+					images, bytes, budget, hits, misses, evictions);
+		}
+	}
+	
+	/**
+	 * A cached image, which is completed once it is loaded, or with {@code null} if it failed to load, in which case
+	 * it is dropped from the cache so the image is loaded again the next time it is requested
+	 */
+	private static class Entry {
+		
+		final CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+		/** The size of the image's pixels, counted once it has loaded */
+		long bytes;
+		int pins;
+	}
+
+	/** Every cached image, from least to most recently used. Also guards the cache's other fields. */
+	private static final LinkedHashMap<String, Entry> images = new LinkedHashMap<>(16, 0.75f, true);
+	private static long cacheBudget = Long.MAX_VALUE, cachedBytes;
+	private static long hits, misses, evictions;
+	private static volatile GraphicsConfiguration screen;
+	private static volatile boolean screenChecked;
+	private static ExecutorService loader;
 
 	/**
-	 * Returns the {@linkplain BufferedImage} with the given name
+	 * Returns the {@linkplain BufferedImage} with the given name. If the image is being
+	 * {@linkplain Images#preloadAsync(String...) preloaded}, this waits for it to finish loading, otherwise it is
+	 * loaded on the calling thread.
 	 * @param file The name of the image to get
 	 * @return The image with the given name
 	 */
 	public static BufferedImage getImage(String file) {
-		if(images.containsKey(file)) {
-			return images.get(file);
-		} else {
-			InputStream input = ClassLoader.getSystemResourceAsStream(file);
-			if(input != null) {
-				try {
-					BufferedImage image = ImageIO.read(input);
-					images.put(file, image);
-				} catch (IOException e) {
-					System.err.println("Failed to read file: "+file);
-					e.printStackTrace();
+		Entry entry;
+		boolean load = false;
+		synchronized(images) {
+			entry = images.get(file);
+			if(entry != null) {
+				hits++;
+			} else {
+				entry = new Entry();
+				images.put(file, entry);
+				misses++;
+				load = true;
+			}
+		}
+		if(load) {
+			loadInto(file, entry);
+		}
+		return entry.future.join();	// Outside the lock, since a background load needs it to finish
+	}
+	
+	/**
+	 * Sets the most memory the decoded pixels of cached images may use. Once the cache is over budget, the least
+	 * recently used images are dropped from it until it fits, and are decoded again if they are requested later.
+	 * Images which are {@linkplain Images#pin(String) pinned} or still loading are never dropped. If unspecified,
+	 * the cache has no limit.
+	 * @param bytes The memory budget, in bytes
+	 * @see Images#getCacheStats()
+	 */
+	public static void setCacheBudget(long bytes) {
+		if(bytes < 0) {
+			throw new IllegalArgumentException("Cache budget cannot be negative");
+		}
+		synchronized(images) {
+			cacheBudget = bytes;
+			evict();
+		}
+	}
+	
+	/**
+	 * Returns the most memory the decoded pixels of cached images may use
+	 * @return The memory budget, in bytes
+	 * @see Images#setCacheBudget(long)
+	 */
+	public static long getCacheBudget() {
+		synchronized(images) {
+			return cacheBudget;
+		}
+	}
+	
+	/**
+	 * Keeps the image with the given name in the cache, loading it if needed, until it is
+	 * {@linkplain Images#unpin(String) unpinned} as many times as it was pinned. Pin images which are in use, so
+	 * the cache does not drop them and then decode a second copy when they are requested again.
+	 * @param file The name of the image to keep
+	 * @return The pinned image
+	 */
+	public static BufferedImage pin(String file) {
+		Entry entry;
+		boolean load = false;
+		synchronized(images) {
+			entry = images.get(file);
+			if(entry == null) {
+				entry = new Entry();
+				images.put(file, entry);
+				misses++;
+				load = true;
+			}
+			entry.pins++;
+		}
+		if(load) {
+			loadInto(file, entry);
+		}
+		return entry.future.join();
+	}
+	
+	/**
+	 * Allows the image with the given name to be dropped from the cache again, once every
+	 * {@linkplain Images#pin(String) pin} on it is removed
+	 * @param file The name of the image to release
+	 */
+	public static void unpin(String file) {
+		synchronized(images) {
+			Entry entry = images.get(file);
+			if(entry != null && entry.pins > 0) {
+				entry.pins--;
+				evict();
+			}
+		}
+	}
+	
+	/**
+	 * Drops every image which is not {@linkplain Images#pin(String) pinned} or loading from the cache, such as when
+	 * moving to a new level
+	 */
+	public static void clearCache() {
+		synchronized(images) {
+			long budget = cacheBudget;
+			cacheBudget = 0;
+			evict();
+			cacheBudget = budget;
+		}
+	}
+	
+	/**
+	 * Returns the current size and hit, miss, and eviction counts of the image cache
+	 * @return A snapshot of the cache's statistics
+	 */
+	public static CacheStats getCacheStats() {
+		synchronized(images) {
+			return new CacheStats(hits, misses, evictions, cachedBytes, cacheBudget, images.size());
+		}
+	}
+	
+	/**
+	 * Drops the least recently used images until the cache fits its budget, skipping any which are pinned or loading
+	 */
+	private static void evict() {
+		Iterator<Entry> it = images.values().iterator();
+		while(cachedBytes > cacheBudget && it.hasNext()) {
+			Entry entry = it.next();
+			if(entry.pins == 0 && entry.future.isDone()) {
+				it.remove();
+				cachedBytes -= entry.bytes;
+				evictions++;
+			}
+		}
+	}
+	
+	/**
+	 * Starts loading the specified images in the background, on a pool of worker threads, so that later calls to
+	 * {@linkplain Images#getImage(String)} do not have to wait for them to be decoded. Images which are already
+	 * loaded or loading are not loaded again.
+	 * @param files The names of the images to load
+	 * @return A handle for tracking the progress of the preload
+	 */
+	public static Preload preloadAsync(String... files) {
+		return preloadAsync(Arrays.asList(files));
+	}
+	
+	/**
+	 * Starts loading the specified images in the background, on a pool of worker threads, so that later calls to
+	 * {@linkplain Images#getImage(String)} do not have to wait for them to be decoded. Images which are already
+	 * loaded or loading are not loaded again.
+	 * @param files The names of the images to load
+	 * @return A handle for tracking the progress of the preload
+	 */
+	public static Preload preloadAsync(Collection<String> files) {
+		return new Preload(files);
+	}
+	
+	/**
+	 * Starts loading every image listed in the specified manifest in the background, as with
+	 * {@linkplain Images#preloadAsync(Collection)}. The manifest is a text file found the same way as images, which
+	 * lists one image name per line. Blank lines, and lines starting with {@code #}, are ignored.
+	 * @param manifest The name of the manifest file
+	 * @return A handle for tracking the progress of the preload, which is empty if the manifest could not be read
+	 */
+	public static Preload preloadManifest(String manifest) {
+		List<String> files = new ArrayList<>();
+		InputStream input = ClassLoader.getSystemResourceAsStream(manifest);
+		if(input == null) {
+			System.err.println("Could not find: "+manifest);
+			return preloadAsync(files);
+		}
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
+			for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+				line = line.trim();
+				if(!line.isEmpty() && !line.startsWith("#")) {
+					files.add(line);
 				}
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to read file: "+manifest);
+			e.printStackTrace();
+		}
+		return preloadAsync(files);
+	}
+	
+	/**
+	 * Returns the future for the specified image, submitting it to the loader pool if it is not cached
+	 */
+	private static CompletableFuture<BufferedImage> request(String file) {
+		Entry entry;
+		synchronized(images) {
+			entry = images.get(file);
+			if(entry != null) {
+				return entry.future;
+			}
+			entry = new Entry();
+			images.put(file, entry);
+			misses++;
+		}
+		Entry created = entry;
+		getLoader().execute(() -> loadInto(file, created));
+		return entry.future;
+	}
+	
+	private static synchronized ExecutorService getLoader() {
+		if(loader == null) {
+			AtomicInteger count = new AtomicInteger();
+			loader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+				Thread thread = new Thread(task, "JGame Loader " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return loader;
+	}
+	
+	/**
+	 * Loads the specified image into {@code entry}, counts its size against the cache's budget, and completes the
+	 * entry, so that anything waiting on it is released even if loading fails unexpectedly. An entry which fails to
+	 * load is dropped from the cache, so a file which was missing or unreadable is tried again later.
+	 */
+	private static void loadInto(String file, Entry entry) {
+		BufferedImage image;
+		try {
+			image = load(file);
+		} catch (RuntimeException | Error e) {
+			synchronized(images) {
+				images.remove(file, entry);
+			}
+			entry.future.completeExceptionally(e);
+			throw e;
+		}
+		synchronized(images) {
+			if(image != null) {
+				DataBuffer data = image.getRaster().getDataBuffer();
+				entry.bytes = (long)data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+				cachedBytes += entry.bytes;
 			} else {
-				System.err.println("Could not find: "+file);
+				images.remove(file, entry);
 			}
+			entry.future.complete(image);
+			evict();
+		}
+	}
+	
+	/**
+	 * Reads and converts the specified image, or returns {@code null} if it cannot be loaded
+	 */
+	private static BufferedImage load(String file) {
+		InputStream input = ClassLoader.getSystemResourceAsStream(file);
+		if(input == null) {
+			System.err.println("Could not find: "+file);
+			return null;
+		}
+		try(input) {
+			BufferedImage image = ImageIO.read(input);
+			return (image != null) ? toCompatibleImage(image) : null;
+		} catch (IOException e) {
+			System.err.println("Failed to read file: "+file);
+			e.printStackTrace();
+			return null;
 		}
-		return images.get(file);
 	}
 	
 	/**
@@ -65,6 +471,67 @@ public class Images {
 		return new Sprite(getImage(name), rows, cols);
 	}
 
+	/**
+	 * Returns a copy of the specified image in the format which is fastest to draw to the screen, or, if there is no
+	 * screen, in {@linkplain BufferedImage#TYPE_INT_ARGB_PRE}, or {@linkplain BufferedImage#TYPE_INT_RGB} for opaque
+	 * images. Images loaded by
+	 * {@linkplain Images#getImage(String)} are already converted; images in other formats are converted every time
+	 * they are drawn, which is much slower.
+	 * @param image The image to convert
+	 * @return A compatible copy of the image, or the image itself if it is already compatible
+	 */
+	public static BufferedImage toCompatibleImage(BufferedImage image) {
+		GraphicsConfiguration config = getScreenConfiguration();
+		if(config != null) {
+			if(image.getColorModel().equals(config.getColorModel(image.getTransparency()))) {
+				return image;
+			}
+		} else if(image.getType() == ((image.getTransparency() == Transparency.OPAQUE)
+				? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE)) {
+			return image;
+		}
+		BufferedImage out = createCompatibleImage(image.getWidth(), image.getHeight(), image.getTransparency());
+		Graphics2D g = out.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return out;
+	}
+	
+	/**
+	 * Creates a blank, transparent image in the format which is fastest to draw to the screen
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @return A new image
+	 * @see Images#toCompatibleImage(BufferedImage)
+	 */
+	public static BufferedImage createCompatibleImage(int width, int height) {
+		return createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+	
+	private static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+		GraphicsConfiguration config = getScreenConfiguration();
+		if(config != null) {
+			return config.createCompatibleImage(width, height, transparency);
+		}
+		// Opaque images are copied straight to the destination, so they are faster without an alpha channel at all
+		int type = (transparency == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+		return new BufferedImage(width, height, type);
+	}
+	
+	/**
+	 * Returns the configuration of the default screen, or {@code null} if there is no screen
+	 */
+	private static GraphicsConfiguration getScreenConfiguration() {
+		if(!screenChecked) {
+			if(!GraphicsEnvironment.isHeadless()) {
+				screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+			}
+			screenChecked = true;
+		}
+		return screen;
+	}
+	
 	/**
 	 * Rotates an image counter-clockwise
 	 * @param image The {@link BufferedImage} to rotate
@@ -72,9 +539,9 @@ public class Images {
 	 * @return A rotated image
 	 */
 	public static BufferedImage rotateImage(BufferedImage image, double radians) {
-		int newWidth = (int)(image.getHeight()*Math.abs(Math.sin(radians))+image.getWidth()*Math.abs(Math.cos(radians)));
-		int newHeight = (int)(image.getHeight()*Math.abs(Math.cos(radians))+image.getWidth()*Math.abs(Math.sin(radians)));
-		BufferedImage out = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
+		Dimension size = rotatedSize(image, radians);
+		int newWidth = size.width, newHeight = size.height;
+		BufferedImage out = createCompatibleImage(newWidth, newHeight);
 		Graphics2D g = (Graphics2D)out.getGraphics();
 		AffineTransform transform = new AffineTransform();
 		transform.translate((newWidth-image.getWidth())/2.0, (newHeight-image.getHeight())/2.0);
@@ -86,6 +553,16 @@ public class Images {
 		return out;
 	}
 	
+	/**
+	 * Returns the size of the image {@linkplain Images#rotateImage(BufferedImage, double)} makes for the specified
+	 * image and angle, without making it
+	 */
+	static Dimension rotatedSize(BufferedImage image, double radians) {
+		double sin = Math.abs(Math.sin(radians)), cos = Math.abs(Math.cos(radians));
+		return new Dimension((int)(image.getHeight()*sin+image.getWidth()*cos),
+				(int)(image.getHeight()*cos+image.getWidth()*sin));
+	}
+	
 	/**
 	 * Scales an image
 	 * @param image The {@link BufferedImage} to scale
@@ -98,7 +575,7 @@ public class Images {
 		}
 		int newWidth = (int) Math.ceil(image.getWidth()*scale);
 		int newHeight = (int)(Math.ceil(image.getHeight()*scale));
-		BufferedImage out = new BufferedImage(newWidth,newHeight,BufferedImage.TYPE_INT_ARGB);
+		BufferedImage out = createCompatibleImage(newWidth, newHeight);
 		Graphics2D g = (Graphics2D)out.getGraphics();
 		g.scale(scale, scale);
 		g.drawImage(image,0,0,null);
@@ -121,7 +598,7 @@ public class Images {
 		int newWidth = (int)(scaleHeight*Math.abs(Math.sin(radians))+scaleWidth*Math.abs(Math.cos(radians)));
 		int newHeight = (int)(scaleHeight*Math.abs(Math.cos(radians))+scaleWidth*Math.abs(Math.sin(radians)));
 		
-		BufferedImage out = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage out = createCompatibleImage(newWidth, newHeight);
 		
 		AffineTransform transform = new AffineTransform();
 		transform.translate((newWidth-scaleWidth)/2.0, (newHeight-scaleHeight)/2.0);
@@ -138,7 +615,8 @@ public class Images {
 	
 	/**
 	 * Splits a {@linkplain BufferedImage} into an array of sub-images by dividing the
-	 * image into a grid with the specified number of rows and columns
+	 * image into a grid with the specified number of rows and columns. Each sub-image is copied into its own
+	 * {@linkplain Images#toCompatibleImage(BufferedImage) compatible} image, so it can be drawn quickly.
 	 * @param image The BufferedImage to divide
 	 * @param rows The number of horizontal divisions
 	 * @param cols The number of vertical divisions
@@ -150,7 +628,12 @@ public class Images {
 		int frameHeight = image.getHeight()/rows;
 		for(int y = 0; y < rows; y++) {
 			for(int x = 0; x < cols; x++) {
-				out[cols*y + x] = image.getSubimage(x*frameWidth, y*frameHeight, frameWidth, frameHeight);
+				BufferedImage frame = createCompatibleImage(frameWidth, frameHeight, image.getTransparency());
+				Graphics2D g = frame.createGraphics();
+				g.setComposite(AlphaComposite.Src);
+				g.drawImage(image, -x*frameWidth, -y*frameHeight, null);
+				g.dispose();
+				out[cols*y + x] = frame;
 			}
 		}
 		return out;
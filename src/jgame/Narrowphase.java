@@ -0,0 +1,272 @@
+package jgame;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.util.Arrays;
+
+/**
+ * Exact collision tests between two {@linkplain CollisionGeometry CollisionGeometries}, whose bounds are already
+ * known to overlap.
+ * <br><br>
+ * Rectangles, circles, rounded rectangles with circular corners, and convex polygons are each described as a
+ * {@linkplain Convex convex polygon} grown outward by a radius, and tested analytically: axis-aligned rectangles
+ * by their bounds alone, polygons with the separating axis theorem, and rounded shapes by the distance between
+ * their polygons. Any other {@linkplain Shape} falls back to intersecting {@linkplain Area Areas}.
+ */
+final class Narrowphase {
+
+	/**
+	 * A convex polygon in world coordinates, grown outward by {@code radius}. A circle is a single point with a
+	 * radius, and a plain polygon has a radius of zero.
+	 */
+	static final class Convex {
+		/** The vertices of the polygon, as {@code x0, y0, x1, y1, ...} */
+		final double[] points;
+		final int count;
+		final double radius;
+		/** Whether this is a rectangle with edges parallel to the world axes, and no radius */
+		final boolean axisAligned;
+
+		Convex(double[] points, double radius, boolean axisAligned) {
+			// Drop repeated vertices, so a degenerate rectangle becomes a line or a point
+			int count = 0;
+			for(int i = 0; i < points.length / 2; i++) {
+				if(count == 0 || points[2*i] != points[2*count-2] || points[2*i+1] != points[2*count-1]) {
+					points[2*count] = points[2*i];
+					points[2*count+1] = points[2*i+1];
+					count++;
+				}
+			}
+			while(count > 1 && points[0] == points[2*count-2] && points[1] == points[2*count-1]) {
+				count--;
+			}
+			this.points = points;
+			this.count = count;
+			this.radius = radius;
+			this.axisAligned = axisAligned;
+		}
+	}
+
+	/** Marks shapes which have no convex form, so they are only classified once */
+	static final Convex NONE = new Convex(new double[0], 0, false);
+
+	private Narrowphase() {}
+
+	/**
+	 * Returns whether the shapes of {@code a} and {@code b} overlap, where their bounds are already known to
+	 * overlap. Shapes which merely touch do not overlap.
+	 */
+	static boolean intersects(CollisionGeometry a, CollisionGeometry b) {
+		Convex ca = a.getConvex(), cb = b.getConvex();
+		if(ca == NONE || cb == NONE) {
+			return intersectsArea(a, b);
+		}
+		boolean out = intersects(ca, cb);
+		if(Game.debugMode && out != intersectsArea(a, b) && !borderline(ca, cb)) {
+			Game.debugWarn("Analytic collision (" + out + ") disagrees with Area collision for "
+					+ a.localShape + " and " + b.localShape);
+		}
+		return out;
+	}
+
+	/**
+	 * The general collision test, used for shapes without a convex form
+	 */
+	static boolean intersectsArea(CollisionGeometry a, CollisionGeometry b) {
+		Area area = new Area(a.getArea());
+		area.intersect(b.getArea());
+		return !area.isEmpty();
+	}
+
+	static boolean intersects(Convex a, Convex b) {
+		if(a.axisAligned && b.axisAligned) {
+			return true;	// Both are their own bounds, which overlap
+		}
+		double reach = a.radius + b.radius;
+		// Edge normals only cover every possible separating axis when neither shape is a point next to a line
+		boolean complete = a.count >= 3 || b.count >= 3 || (a.count == 2 && b.count == 2);
+		if(complete && !separated(a, b) && !separated(b, a)) {
+			return reach > 0 || (a.count >= 3 && b.count >= 3);	// Lines and points without a radius have no area
+		}
+		if(reach <= 0) {
+			return false;
+		}
+		return distanceSquared(a, b) < reach * reach;
+	}
+
+	/**
+	 * Returns the convex form of {@code shape} after applying {@code transform}, or {@linkplain Narrowphase#NONE}
+	 * if it does not have one. The transform must not scale or skew, as with every {@linkplain Entity} transform.
+	 */
+	static Convex classify(Shape shape, AffineTransform transform) {
+		boolean square = (transform.getType() & AffineTransform.TYPE_GENERAL_ROTATION) == 0;
+		if(shape instanceof Rectangle2D r) {
+			return new Convex(corners(transform, r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY()), 0, square);
+		} else if(shape instanceof Ellipse2D e) {
+			if(e.getWidth() != e.getHeight()) {
+				return NONE;
+			}
+			double[] center = {e.getCenterX(), e.getCenterY()};
+			transform.transform(center, 0, center, 0, 1);
+			return new Convex(center, e.getWidth() / 2, false);
+		} else if(shape instanceof RoundRectangle2D r) {
+			double arc = r.getArcWidth();
+			if(arc != r.getArcHeight() || arc > Math.min(r.getWidth(), r.getHeight())) {
+				return NONE;
+			}
+			double radius = Math.max(arc, 0) / 2;
+			return new Convex(corners(transform, r.getMinX() + radius, r.getMinY() + radius,
+					r.getMaxX() - radius, r.getMaxY() - radius), radius, square && radius == 0);
+		} else {
+			double[] polygon = convexPolygon(shape);
+			if(polygon == null) {
+				return NONE;
+			}
+			transform.transform(polygon, 0, polygon, 0, polygon.length / 2);
+			return new Convex(polygon, 0, false);
+		}
+	}
+
+	private static double[] corners(AffineTransform transform, double x1, double y1, double x2, double y2) {
+		double[] out = {x1, y1, x2, y1, x2, y2, x1, y2};
+		transform.transform(out, 0, out, 0, 4);
+		return out;
+	}
+
+	/**
+	 * Returns the vertices of {@code shape} if it is a single convex polygon made of straight lines, else {@code null}
+	 */
+	private static double[] convexPolygon(Shape shape) {
+		double[] points = new double[16];
+		int count = 0;
+		double[] coords = new double[6];
+		for(PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+			int type = it.currentSegment(coords);
+			if(type == PathIterator.SEG_CLOSE) {
+				continue;
+			} else if(type == PathIterator.SEG_MOVETO && count > 0) {
+				return null;	// More than one sub-path
+			} else if(type != PathIterator.SEG_MOVETO && type != PathIterator.SEG_LINETO) {
+				return null;	// Curves
+			}
+			if(count > 0 && points[2*count-2] == coords[0] && points[2*count-1] == coords[1]) {
+				continue;	// Repeated vertex
+			}
+			if(2*count == points.length) {
+				points = Arrays.copyOf(points, points.length * 2);
+			}
+			points[2*count] = coords[0];
+			points[2*count+1] = coords[1];
+			count++;
+		}
+		if(count > 1 && points[0] == points[2*count-2] && points[1] == points[2*count-1]) {
+			count--;	// Explicitly closed
+		}
+		if(count < 3) {
+			return null;
+		}
+		// Convex if every turn is the same way, and the turns add up to a single loop
+		int sign = 0;
+		double turning = 0;
+		for(int i = 0; i < count; i++) {
+			int j = (i + 1) % count, k = (i + 2) % count;
+			double ax = points[2*j] - points[2*i], ay = points[2*j+1] - points[2*i+1];
+			double bx = points[2*k] - points[2*j], by = points[2*k+1] - points[2*j+1];
+			double cross = ax * by - ay * bx;
+			if(cross != 0) {
+				int s = (cross > 0) ? 1 : -1;
+				if(sign != 0 && s != sign) {
+					return null;
+				}
+				sign = s;
+			}
+			turning += Math.atan2(cross, ax * bx + ay * by);
+		}
+		if(sign == 0 || Math.abs(Math.abs(turning) - 2 * Math.PI) > 1e-6) {
+			return null;
+		}
+		return Arrays.copyOf(points, 2*count);
+	}
+
+	/**
+	 * Returns whether one of the edges of {@code a} separates the two polygons, ignoring their radii. Polygons
+	 * which only touch are separated.
+	 */
+	private static boolean separated(Convex a, Convex b) {
+		double[] p = a.points;
+		int edges = (a.count >= 3) ? a.count : a.count - 1;	// A line has only one edge to test
+		for(int i = 0; i < edges; i++) {
+			int j = (i + 1) % a.count;
+			double nx = p[2*i+1] - p[2*j+1];
+			double ny = p[2*j] - p[2*i];
+			double minA = Double.POSITIVE_INFINITY, maxA = Double.NEGATIVE_INFINITY;
+			for(int k = 0; k < a.count; k++) {
+				double d = nx * p[2*k] + ny * p[2*k+1];
+				minA = Math.min(minA, d);
+				maxA = Math.max(maxA, d);
+			}
+			double minB = Double.POSITIVE_INFINITY, maxB = Double.NEGATIVE_INFINITY;
+			for(int k = 0; k < b.count; k++) {
+				double d = nx * b.points[2*k] + ny * b.points[2*k+1];
+				minB = Math.min(minB, d);
+				maxB = Math.max(maxB, d);
+			}
+			if(maxA <= minB || maxB <= minA) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the squared distance between two polygons which do not overlap, or which are points or lines
+	 */
+	private static double distanceSquared(Convex a, Convex b) {
+		return Math.min(vertexDistanceSquared(a, b), vertexDistanceSquared(b, a));
+	}
+
+	/**
+	 * Returns the smallest squared distance from any vertex of {@code a} to any edge of {@code b}
+	 */
+	private static double vertexDistanceSquared(Convex a, Convex b) {
+		double out = Double.POSITIVE_INFINITY;
+		double[] q = b.points;
+		for(int i = 0; i < a.count; i++) {
+			double px = a.points[2*i], py = a.points[2*i+1];
+			for(int j = 0; j < b.count; j++) {
+				int k = (j + 1) % b.count;
+				out = Math.min(out, segmentDistanceSquared(px, py, q[2*j], q[2*j+1], q[2*k], q[2*k+1]));
+			}
+		}
+		return out;
+	}
+
+	private static double segmentDistanceSquared(double px, double py, double x1, double y1, double x2, double y2) {
+		double dx = x2 - x1, dy = y2 - y1;
+		double lengthSquared = dx * dx + dy * dy;
+		double t = (lengthSquared == 0) ? 0 : ((px - x1) * dx + (py - y1) * dy) / lengthSquared;
+		t = Math.max(0, Math.min(1, t));
+		double ex = x1 + t * dx - px, ey = y1 + t * dy - py;
+		return ex * ex + ey * ey;
+	}
+
+	/**
+	 * Returns whether a pair of rounded shapes is close enough to touching that the curve approximations used by
+	 * {@linkplain Area} could reasonably disagree with the exact result
+	 */
+	private static boolean borderline(Convex a, Convex b) {
+		double reach = a.radius + b.radius;
+		if(reach <= 0) {
+			return false;
+		}
+		double tolerance = reach * 1e-3;
+		Convex grown = new Convex(a.points, a.radius + tolerance, false);
+		Convex shrunk = new Convex(a.points, Math.max(0, a.radius - tolerance), false);
+		return intersects(grown, b) != intersects(shrunk, b);
+	}
+}
@@ -0,0 +1,21 @@
+package jgame;
+
+/**
+ * Marks an {@linkplain Entity} whose {@linkplain Entity#update() update} is safe to run at the same time as the
+ * updates of other such Entities. If the {@linkplain World} has a {@linkplain World#setParallelism(int) parallelism}
+ * greater than one, Entities implementing this interface are updated across several threads, after all other
+ * Entities have been updated in order.
+ * <br><br>
+ * An Entity may read anything and check collisions during a parallel update, and may
+ * {@linkplain World#add(Entity) add} or {@linkplain World#remove(Entity) remove} Entities, but should only change
+ * its own fields. Entities added or removed during a parallel update are applied at the start of the next update,
+ * as usual, though not necessarily in the order they were added.
+ * <br><br>
+ * Checking a collision never changes either Entity, so it is safe while the other Entity is being updated, though
+ * it may see that Entity before or after its update. Entities of a type looked up with
+ * {@linkplain Entity#collisionWithType(Class)} are only found near where they were when the parallel updates
+ * began.
+ */
+public interface ParallelUpdate {
+
+}
@@ -0,0 +1,415 @@
+package jgame;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An {@linkplain Entity} which moves and draws a large number of simple particles, such as sparks or debris. Rather
+ * than each particle being an Entity of its own, the particles are kept in arrays of numbers, updated together in
+ * a single loop, and drawn together as single pixels or small squares in one pass, so a system can hold hundreds of
+ * thousands of them.
+ * <br><br>
+ * Particles are positioned in world coordinates, and move by their velocity and the system's
+ * {@linkplain ParticleSystem#setGravity(double, double) gravity} every update until they run out of life. They do
+ * not collide with anything, and neither does the system itself. The system's own position is only where
+ * {@linkplain ParticleSystem#burst(int, double, int, int) bursts} come from, so it can follow another Entity without
+ * moving the particles already emitted.
+ * <br><br>
+ * Example usage:
+ * <br>{@code ParticleSystem sparks = new ParticleSystem(100_000);}
+ * <br>{@code world.add(sparks, x, y);}
+ * <br>{@code sparks.burst(500, 3, 40, 0xFFFFC040);}
+ */
+public class ParticleSystem extends Entity {
+	
+	/** The fewest particles each thread updates at once, when updating in parallel */
+	private static final int PARALLEL_THRESHOLD = 16_384;
+	
+	private final int capacity;
+	private int count;
+	private final float[] px, py, vx, vy;
+	private final int[] life, maxLife, colors;
+	private float gravityX, gravityY;
+	private int particleSize = 1;
+	private boolean fade = true;
+	private boolean parallel;
+	
+	/** The area covered by every particle, in world coordinates, found during each update */
+	private double minX, minY, maxX, maxY;
+	private final Rectangle2D.Double drawBounds = new Rectangle2D.Double();
+	
+	/** The image particles are drawn into, which covers the area being drawn to, in device pixels */
+	private BufferedImage buffer;
+	private int[] pixels;
+	/** The part of the buffer drawn on in the last frame, which must be cleared before the next one */
+	private int dirtyMinX, dirtyMinY, dirtyMaxX = -1, dirtyMaxY = -1;
+	
+	/**
+	 * Creates an empty {@linkplain ParticleSystem} which can hold up to {@code capacity} particles at once
+	 * @param capacity The most particles the system can hold
+	 */
+	public ParticleSystem(int capacity) {
+		if(capacity < 0) {
+			throw new IllegalArgumentException("Capacity cannot be negative");
+		}
+		this.capacity = capacity;
+		this.px = new float[capacity];
+		this.py = new float[capacity];
+		this.vx = new float[capacity];
+		this.vy = new float[capacity];
+		this.life = new int[capacity];
+		this.maxLife = new int[capacity];
+		this.colors = new int[capacity];
+		this.shape = new Rectangle();
+		this.rotationMode = RotationMode.NONE;
+	}
+	
+	@Override
+	public void setup() {
+		
+	}
+	
+	/**
+	 * Moves every particle, and removes those which have run out of life. Subclasses which override this to emit
+	 * particles should still call {@code super.update()}.
+	 */
+	@Override
+	public void update() {
+		ForkJoinPool pool = (parallel && world != null) ? world.getUpdatePool() : null;
+		if(pool != null && count >= 2 * PARALLEL_THRESHOLD) {
+			pool.invoke(new Step(0, count));
+		} else {
+			step(0, count);
+		}
+		// Remove dead particles by moving the last particle into their place, and find the area of the rest, including
+		// where they were before this update, since they may be drawn between the two
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		int i = 0;
+		while(i < count) {
+			if(life[i] <= 0) {
+				count--;
+				move(count, i);
+			} else {
+				float x = px[i], y = py[i], lastX = x - vx[i], lastY = y - vy[i];
+				minX = Math.min(minX, Math.min(x, lastX));
+				maxX = Math.max(maxX, Math.max(x, lastX));
+				minY = Math.min(minY, Math.min(y, lastY));
+				maxY = Math.max(maxY, Math.max(y, lastY));
+				i++;
+			}
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+	}
+	
+	/**
+	 * Moves the particles from {@code from}, inclusive, to {@code to}, exclusive, by one update
+	 */
+	private void step(int from, int to) {
+		float gx = gravityX, gy = gravityY;
+		float[] px = this.px, py = this.py, vx = this.vx, vy = this.vy;
+		int[] life = this.life;
+		for(int i = from; i < to; i++) {
+			life[i]--;
+			vx[i] += gx;
+			vy[i] += gy;
+			px[i] += vx[i];
+			py[i] += vy[i];
+		}
+	}
+	
+	/**
+	 * Splits a range of particles in half until each part is small enough for one thread
+	 */
+	@SuppressWarnings("serial")	// Never serialized
+	private class Step extends RecursiveAction {
+		private final int from, to;
+		
+		Step(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from < 2 * PARALLEL_THRESHOLD) {
+				step(from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Step(from, middle), new Step(middle, to));
+			}
+		}
+	}
+	
+	private void move(int from, int to) {
+		px[to] = px[from];
+		py[to] = py[from];
+		vx[to] = vx[from];
+		vy[to] = vy[from];
+		life[to] = life[from];
+		maxLife[to] = maxLife[from];
+		colors[to] = colors[from];
+	}
+	
+	/**
+	 * Adds a particle at the specified point in the world, unless the system is full
+	 * @param x The particle's x position
+	 * @param y The particle's y position
+	 * @param xSpeed How far the particle moves rightwards each update
+	 * @param ySpeed How far the particle moves downwards each update
+	 * @param life How many updates the particle lasts
+	 * @param argb The particle's color, as in {@linkplain Color#getRGB()}
+	 * @return Whether the particle was added
+	 */
+	public boolean emit(double x, double y, double xSpeed, double ySpeed, int life, int argb) {
+		if(count == capacity || life <= 0) {
+			return false;
+		}
+		int i = count++;
+		px[i] = (float)x;
+		py[i] = (float)y;
+		vx[i] = (float)xSpeed;
+		vy[i] = (float)ySpeed;
+		this.life[i] = life;
+		maxLife[i] = life;
+		colors[i] = argb;
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+		return true;
+	}
+	
+	/**
+	 * Adds up to {@code count} particles at this system's position, moving in random directions at up to
+	 * {@code speed}, using the {@linkplain World#getRandom() world's random number generator}
+	 * @param count The number of particles to add
+	 * @param speed The fastest a particle may move, per update
+	 * @param life How many updates each particle lasts
+	 * @param argb The particles' color, as in {@linkplain Color#getRGB()}
+	 * @return The number of particles added, which is fewer than {@code count} if the system became full
+	 */
+	public int burst(int count, double speed, int life, int argb) {
+		Random random = (world != null) ? world.getRandom() : new Random();
+		int added = 0;
+		for(; added < count; added++) {
+			double angle = random.nextDouble() * 2 * Math.PI;
+			double s = random.nextDouble() * speed;
+			if(!emit(x, y, s * Math.cos(angle), s * Math.sin(angle), life, argb)) {
+				break;
+			}
+		}
+		return added;
+	}
+	
+	/**
+	 * Removes every particle
+	 */
+	public void clear() {
+		count = 0;
+	}
+	
+	/**
+	 * Returns the number of particles in the system
+	 * @return The number of live particles
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the most particles the system can hold at once
+	 * @return The system's capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Sets the acceleration applied to every particle each update. If unspecified, there is no gravity.
+	 * @param x The horizontal acceleration, rightwards
+	 * @param y The vertical acceleration, downwards
+	 */
+	public void setGravity(double x, double y) {
+		this.gravityX = (float)x;
+		this.gravityY = (float)y;
+	}
+	
+	/**
+	 * Sets the width and height each particle is drawn with, in world units. If unspecified, particles are drawn
+	 * one unit across.
+	 * @param size The size of each particle
+	 */
+	public void setParticleSize(int size) {
+		if(size < 1) {
+			throw new IllegalArgumentException("Particle size must be at least 1");
+		}
+		this.particleSize = size;
+	}
+	
+	/**
+	 * Sets whether particles fade out as they run out of life. If unspecified, they do.
+	 * @param fade Whether particles fade out
+	 */
+	public void setFade(boolean fade) {
+		this.fade = fade;
+	}
+	
+	/**
+	 * Sets whether particles are moved across several threads, which is only done if the {@linkplain World} has a
+	 * {@linkplain World#setParallelism(int) parallelism} greater than one, and the system has enough particles to
+	 * be worth splitting. If unspecified, particles are moved on the game's thread.
+	 * @param parallel Whether to move particles in parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+	
+	/**
+	 * Returns the area covered by every particle, relative to the system's position, so the system is not drawn
+	 * while every particle is off screen
+	 */
+	@Override
+	public Rectangle2D getDrawBounds() {
+		if(count == 0) {
+			drawBounds.setRect(0, 0, 0, 0);
+		} else {
+			double pad = particleSize + 1;
+			drawBounds.setRect(minX - x - pad, minY - y - pad, maxX - minX + 2 * pad, maxY - minY + 2 * pad);
+		}
+		return drawBounds;
+	}
+	
+	/**
+	 * Draws every particle into an image covering the area being drawn to, then draws that image at once
+	 * @param g The untransformed graphics to draw on
+	 */
+	@Override
+	public void rawPaint(Graphics g) {
+		if(count == 0) {
+			return;
+		}
+		Graphics2D g2 = (Graphics2D)g.create();
+		AffineTransform transform = g2.getTransform();
+		g2.setTransform(new AffineTransform());
+		Rectangle area = g2.getClipBounds();
+		if(area == null) {
+			area = g2.getDeviceConfiguration().getBounds();
+		}
+		if(area.width <= 0 || area.height <= 0) {
+			g2.dispose();
+			return;
+		}
+		if(buffer == null || buffer.getWidth() < area.width || buffer.getHeight() < area.height) {
+			int width = Math.max(area.width, (buffer != null) ? buffer.getWidth() : 0);
+			int height = Math.max(area.height, (buffer != null) ? buffer.getHeight() : 0);
+			buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+			pixels = ((DataBufferInt)buffer.getRaster().getDataBuffer()).getData();
+			dirtyMaxX = dirtyMaxY = -1;
+		}
+		clearDirty();
+		drawParticles(transform, area);
+		if(dirtyMaxX >= dirtyMinX && dirtyMaxY >= dirtyMinY) {
+			g2.drawImage(buffer, area.x + dirtyMinX, area.y + dirtyMinY, area.x + dirtyMaxX + 1, area.y + dirtyMaxY + 1,
+					dirtyMinX, dirtyMinY, dirtyMaxX + 1, dirtyMaxY + 1, null);
+		}
+		g2.dispose();
+	}
+	
+	private void clearDirty() {
+		int stride = buffer.getWidth();
+		for(int y = dirtyMinY; y <= dirtyMaxY; y++) {
+			Arrays.fill(pixels, y * stride + dirtyMinX, y * stride + dirtyMaxX + 1, 0);
+		}
+		dirtyMinX = dirtyMinY = Integer.MAX_VALUE;
+		dirtyMaxX = dirtyMaxY = -1;
+	}
+	
+	/**
+	 * Blends every particle into the buffer, as squares in device pixels
+	 */
+	private void drawParticles(AffineTransform transform, Rectangle area) {
+		double m00 = transform.getScaleX(), m01 = transform.getShearX(), m02 = transform.getTranslateX() - area.x;
+		double m10 = transform.getShearY(), m11 = transform.getScaleY(), m12 = transform.getTranslateY() - area.y;
+		int size = Math.max(1, (int)Math.round(particleSize * Math.sqrt(Math.abs(transform.getDeterminant()))));
+		double half = (size - 1) / 2.0;
+		// Draw particles part way back along their last step when drawing between updates, like other Entities
+		float back = (world != null && world.interpolate) ? (float)(1 - world.renderAlpha) : 0;
+		int width = area.width, height = area.height, stride = buffer.getWidth();
+		int minX = dirtyMinX, minY = dirtyMinY, maxX = dirtyMaxX, maxY = dirtyMaxY;
+		int[] pixels = this.pixels;
+		for(int i = 0; i < count; i++) {
+			float wx = px[i] - vx[i] * back, wy = py[i] - vy[i] * back;
+			int left = (int)Math.floor(m00 * wx + m01 * wy + m02 - half);
+			int top = (int)Math.floor(m10 * wx + m11 * wy + m12 - half);
+			int right = Math.min(left + size, width), bottom = Math.min(top + size, height);
+			left = Math.max(left, 0);
+			top = Math.max(top, 0);
+			if(left >= right || top >= bottom) {
+				continue;
+			}
+			int argb = colors[i];
+			int alpha = argb >>> 24;
+			if(fade) {
+				alpha = alpha * life[i] / maxLife[i];
+			}
+			if(alpha == 0) {
+				continue;
+			}
+			if(left < minX) minX = left;
+			if(top < minY) minY = top;
+			if(right - 1 > maxX) maxX = right - 1;
+			if(bottom - 1 > maxY) maxY = bottom - 1;
+			if(alpha == 255) {
+				int opaque = argb | 0xFF000000;
+				for(int y = top; y < bottom; y++) {
+					int row = y * stride;
+					for(int x = left; x < right; x++) {
+						pixels[row + x] = opaque;
+					}
+				}
+			} else {
+				int source = premultiply(argb, alpha);
+				int inverse = 255 - alpha;
+				for(int y = top; y < bottom; y++) {
+					int row = y * stride;
+					for(int x = left; x < right; x++) {
+						pixels[row + x] = source + scale(pixels[row + x], inverse);
+					}
+				}
+			}
+		}
+		dirtyMinX = minX;
+		dirtyMinY = minY;
+		dirtyMaxX = maxX;
+		dirtyMaxY = maxY;
+	}
+	
+	/**
+	 * Returns the specified color with the specified alpha, with its color channels multiplied by its alpha
+	 */
+	private static int premultiply(int argb, int alpha) {
+		return (alpha << 24) | (scale(argb, alpha) & 0x00FFFFFF);
+	}
+	
+	/**
+	 * Multiplies every channel of a packed color by {@code factor / 255}
+	 */
+	private static int scale(int argb, int factor) {
+		int ag = ((argb >>> 8) & 0x00FF00FF) * factor + 0x00800080;
+		int rb = (argb & 0x00FF00FF) * factor + 0x00800080;
+		ag = ((ag + ((ag >>> 8) & 0x00FF00FF)) >>> 8) & 0x00FF00FF;
+		rb = ((rb + ((rb >>> 8) & 0x00FF00FF)) >>> 8) & 0x00FF00FF;
+		return (ag << 8) | rb;
+	}
+}
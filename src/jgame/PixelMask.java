@@ -0,0 +1,189 @@
+package jgame;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * The opaque pixels of an image, packed one bit per pixel into rows of {@code long} words, with the leftmost
+ * pixel of each word in its lowest bit. Used for {@linkplain Entity.CollisionMode#PIXEL pixel collisions}, which
+ * compare two masks a word at a time after shifting one to line up with the other.
+ */
+final class PixelMask {
+	
+	/** Pixels with at least this alpha are solid */
+	private static final int ALPHA_THRESHOLD = 128;
+	
+	final int width, height;
+	/** The number of words in each row */
+	private final int words;
+	private final long[] bits;
+	private PixelMask mirrored;
+	
+	private PixelMask(int width, int height, long[] bits) {
+		this.width = width;
+		this.height = height;
+		this.words = (width + 63) >>> 6;
+		this.bits = bits;
+	}
+	
+	/**
+	 * Builds the mask of the specified image
+	 */
+	static PixelMask of(BufferedImage image) {
+		int width = image.getWidth(), height = image.getHeight();
+		int words = (width + 63) >>> 6;
+		long[] bits = new long[words * height];
+		int[] row = new int[width];
+		for(int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for(int x = 0; x < width; x++) {
+				if(row[x] >>> 24 >= ALPHA_THRESHOLD) {
+					bits[y * words + (x >>> 6)] |= 1L << x;
+				}
+			}
+		}
+		return new PixelMask(width, height, bits);
+	}
+	
+	/**
+	 * Returns this mask flipped horizontally, building it on first use
+	 */
+	synchronized PixelMask mirrored() {
+		if(mirrored == null) {
+			long[] out = new long[bits.length];
+			for(int y = 0; y < height; y++) {
+				for(int x = 0; x < width; x++) {
+					if(get(x, y)) {
+						int m = width - 1 - x;
+						out[y * words + (m >>> 6)] |= 1L << m;
+					}
+				}
+			}
+			mirrored = new PixelMask(width, height, out);
+			mirrored.mirrored = this;
+		}
+		return mirrored;
+	}
+	
+	private boolean get(int x, int y) {
+		return (bits[y * words + (x >>> 6)] & (1L << x)) != 0;
+	}
+	
+	/**
+	 * Returns 64 pixels of the specified row, starting at pixel {@code x}, treating pixels outside the mask as empty
+	 */
+	private long window(int y, int x) {
+		int word = x >> 6, offset = x & 63;
+		long out = word(y, word) >>> offset;
+		if(offset != 0) {
+			out |= word(y, word + 1) << (64 - offset);
+		}
+		return out;
+	}
+	
+	private long word(int y, int word) {
+		return (word >= 0 && word < words) ? bits[y * words + word] : 0;
+	}
+	
+	/**
+	 * Returns whether this mask, with its top left pixel at {@code (ax, ay)}, shares a solid pixel with {@code b},
+	 * with its top left pixel at {@code (bx, by)}
+	 */
+	boolean intersects(int ax, int ay, PixelMask b, int bx, int by) {
+		int dx = bx - ax, dy = by - ay;
+		int minX = Math.max(0, dx), maxX = Math.min(width, dx + b.width);
+		int minY = Math.max(0, dy), maxY = Math.min(height, dy + b.height);
+		if(minX >= maxX || minY >= maxY) {
+			return false;
+		}
+		for(int y = minY; y < maxY; y++) {
+			for(int word = minX >>> 6; word <= (maxX - 1) >>> 6; word++) {
+				// b's pixels lined up with this word, so empty bits outside either mask never match
+				if((bits[y * words + word] & b.window(y - dy, (word << 6) - dx)) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns whether this mask, with its top left pixel at {@code (ax, ay)}, has a solid pixel inside the
+	 * specified rectangle
+	 */
+	boolean intersects(int ax, int ay, Rectangle2D area) {
+		int minX = Math.max(0, (int)Math.floor(area.getMinX() - ax));
+		int maxX = Math.min(width, (int)Math.ceil(area.getMaxX() - ax));
+		int minY = Math.max(0, (int)Math.floor(area.getMinY() - ay));
+		int maxY = Math.min(height, (int)Math.ceil(area.getMaxY() - ay));
+		if(minX >= maxX || minY >= maxY) {
+			return false;
+		}
+		for(int y = minY; y < maxY; y++) {
+			for(int word = minX >>> 6; word <= (maxX - 1) >>> 6; word++) {
+				long range = -1L;
+				if(word == minX >>> 6) {
+					range &= -1L << (minX & 63);
+				}
+				if(word == (maxX - 1) >>> 6 && (maxX & 63) != 0) {
+					range &= -1L >>> (64 - (maxX & 63));
+				}
+				if((bits[y * words + word] & range) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Tests two {@linkplain Entity Entities}, whose bounds are known to overlap, by their masks, or returns
+	 * {@code null} if they cannot be tested this way: when neither uses {@linkplain Entity.CollisionMode#PIXEL},
+	 * when one is rotated, or when the other has no mask and is not an unrotated rectangle.
+	 */
+	static Boolean intersects(Entity a, Entity b) {
+		PixelMask ma = maskOf(a), mb = maskOf(b);
+		if(ma == null && mb == null) {
+			return null;
+		} else if(ma != null && mb != null) {
+			return ma.intersects(left(a, ma), top(a, ma), mb, left(b, mb), top(b, mb));
+		} else if(ma == null) {
+			return intersects(b, a);
+		}
+		Narrowphase.Convex other = b.getGeometry().getConvex();
+		if(other == Narrowphase.NONE || !other.axisAligned) {
+			return null;
+		}
+		return ma.intersects(left(a, ma), top(a, ma), b.getGeometry().bounds);
+	}
+	
+	/**
+	 * Returns the mask the specified Entity is drawn with, already mirrored if it is flipped, or {@code null} if it
+	 * does not use pixel collisions or is rotated
+	 */
+	private static PixelMask maskOf(Entity e) {
+		if(e.collisionMode != Entity.CollisionMode.PIXEL || e.sprite == null) {
+			return null;
+		}
+		AffineTransform t = e.getGeometry().transform;
+		if((t.getType() & (AffineTransform.TYPE_GENERAL_ROTATION | AffineTransform.TYPE_QUADRANT_ROTATION)) != 0) {
+			return null;
+		}
+		PixelMask mask = e.sprite.getMask();
+		return (t.getScaleX() < 0) ? mask.mirrored() : mask;
+	}
+	
+	/**
+	 * The column of the world the mask's leftmost pixel lies in, matching where
+	 * {@linkplain Entity#paint(java.awt.Graphics)} draws the image
+	 */
+	private static int left(Entity e, PixelMask mask) {
+		double offset = (e.getGeometry().transform.getScaleX() < 0) ? mask.width/2 - mask.width : -(mask.width/2);
+		return (int)Math.floor(e.x + offset + 0.5);
+	}
+	
+	private static int top(Entity e, PixelMask mask) {
+		return (int)Math.floor(e.y - mask.height/2 + 0.5);
+	}
+}
@@ -0,0 +1,288 @@
+package jgame;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * A uniform grid of square cells, used by the {@linkplain World} to find {@linkplain Entity Entities} near a
+ * given area without checking every Entity in the world.
+ * <br><br>
+ * Each Entity is stored in every cell its {@linkplain Entity#getCollisionBounds() bounds} overlap. Entities
+ * which would cover too many cells are kept in a separate list which is checked by every query.
+ */
+class SpatialHash {
+	
+	/** Entities which would occupy more cells than this are stored in {@linkplain SpatialHash#large} instead */
+	private static final int MAX_CELLS = 64;
+	
+	private double cellSize;
+	
+	// Open-addressed table from packed cell coordinates to the Entities in that cell. Cells which have been emptied
+	// keep their slot until the table is rebuilt, so used counts every slot taken and occupied only non-empty cells.
+	private long[] keys;
+	private ArrayList<?>[] buckets;
+	private int used, occupied;
+	
+	private final ArrayList<Entity> large = new ArrayList<>();
+	
+	SpatialHash(double cellSize) {
+		setCellSize(cellSize);
+		this.keys = new long[256];
+		this.buckets = new ArrayList<?>[256];
+	}
+	
+	/**
+	 * Changes the size of the cells. Note that this does not re-insert any Entities, so the hash should be
+	 * {@linkplain SpatialHash#clear() cleared} and rebuilt afterwards
+	 * @param cellSize The width and height of each cell
+	 */
+	void setCellSize(double cellSize) {
+		if(!(cellSize > 0)) {
+			throw new IllegalArgumentException("Cell size must be positive");
+		}
+		this.cellSize = cellSize;
+	}
+	
+	double getCellSize() {
+		return cellSize;
+	}
+	
+	/**
+	 * Removes all Entities from the hash
+	 */
+	void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(buckets, null);
+		used = 0;
+		occupied = 0;
+		for(Entity e : large) {
+			e.hashed = false;
+		}
+		large.clear();
+	}
+	
+	/**
+	 * Adds the specified Entity to every cell its bounds overlap
+	 * @param e The Entity to add
+	 */
+	void insert(Entity e) {
+		Rectangle2D bounds = e.getGeometry().bounds;
+		int minX = cell(bounds.getMinX()), minY = cell(bounds.getMinY());
+		int maxX = cell(bounds.getMaxX()), maxY = cell(bounds.getMaxY());
+		place(e, minX, minY, maxX, maxY);
+	}
+	
+	/**
+	 * Removes the specified Entity from all the cells it occupies
+	 * @param e The Entity to remove
+	 */
+	void remove(Entity e) {
+		if(!e.hashed) {
+			return;
+		}
+		if(e.oversized) {
+			large.remove(e);
+		} else {
+			for(int cy = e.cellMinY; cy <= e.cellMaxY; cy++) {
+				for(int cx = e.cellMinX; cx <= e.cellMaxX; cx++) {
+					ArrayList<?> bucket = bucket(cx, cy, false);
+					if(bucket != null && bucket.remove(e) && bucket.isEmpty()) {
+						occupied--;
+					}
+				}
+			}
+		}
+		e.hashed = false;
+	}
+	
+	/**
+	 * Moves the specified Entity to the cells matching its current bounds, if they have changed
+	 * @param e The Entity to update
+	 */
+	void update(Entity e) {
+		if(!e.hashed) {
+			return;
+		}
+		boolean pending = e.rehashPending;
+		e.rehashPending = true;	// It is being moved now, so rebuilding its geometry need not queue it
+		Rectangle2D bounds = e.getGeometry().bounds;
+		e.rehashPending = pending;
+		int minX = cell(bounds.getMinX()), minY = cell(bounds.getMinY());
+		int maxX = cell(bounds.getMaxX()), maxY = cell(bounds.getMaxY());
+		if(minX == e.cellMinX && minY == e.cellMinY && maxX == e.cellMaxX && maxY == e.cellMaxY) {
+			return;
+		}
+		remove(e);
+		place(e, minX, minY, maxX, maxY);
+	}
+	
+	/**
+	 * Returns the number of cells the specified area overlaps
+	 * @param area The area to check, in world coordinates
+	 * @return How many cells a query of that area would visit
+	 */
+	long cellsCovering(Rectangle2D area) {
+		long width = cell(area.getMaxX()) - cell(area.getMinX()) + 1L;
+		long height = cell(area.getMaxY()) - cell(area.getMinY()) + 1L;
+		return width * height;
+	}
+	
+	/**
+	 * Returns the first Entity near the specified area which passes {@code test}, or {@code null} if there is none.
+	 * Each Entity is tested at most once, even if it shares several cells with the area.
+	 * @param area The area to search, in world coordinates
+	 * @param test The condition an Entity must meet to be returned
+	 * @return The first matching Entity, or {@code null}
+	 */
+	Entity find(Rectangle2D area, Predicate<Entity> test) {
+		int minX = cell(area.getMinX()), minY = cell(area.getMinY());
+		int maxX = cell(area.getMaxX()), maxY = cell(area.getMaxY());
+		if((long)(maxX - minX + 1) * (maxY - minY + 1) > used) {
+			// The area covers more cells than are populated, so walk the populated ones instead
+			for(int i = 0; i < keys.length; i++) {
+				if(buckets[i] != null) {
+					int cx = (int)(keys[i] >> 32), cy = (int)keys[i];
+					if(cx >= minX && cx <= maxX && cy >= minY && cy <= maxY) {
+						Entity found = search(buckets[i], cx, cy, minX, minY, test);
+						if(found != null) {
+							return found;
+						}
+					}
+				}
+			}
+		} else {
+			for(int cy = minY; cy <= maxY; cy++) {
+				for(int cx = minX; cx <= maxX; cx++) {
+					ArrayList<?> bucket = bucket(cx, cy, false);
+					if(bucket != null) {
+						Entity found = search(bucket, cx, cy, minX, minY, test);
+						if(found != null) {
+							return found;
+						}
+					}
+				}
+			}
+		}
+		for(int i = 0; i < large.size(); i++) {
+			Entity e = large.get(i);
+			if(e.getGeometry().bounds.intersects(area) && test.test(e)) {
+				return e;
+			}
+		}
+		return null;
+	}
+	
+	private Entity search(ArrayList<?> bucket, int cx, int cy, int minX, int minY, Predicate<Entity> test) {
+		for(int i = 0; i < bucket.size(); i++) {
+			Entity e = (Entity)bucket.get(i);
+			// Only test an Entity in the first cell it shares with the area, so it is never tested twice
+			if(cx == Math.max(minX, e.cellMinX) && cy == Math.max(minY, e.cellMinY) && test.test(e)) {
+				return e;
+			}
+		}
+		return null;
+	}
+	
+	private void place(Entity e, int minX, int minY, int maxX, int maxY) {
+		e.cellMinX = minX;
+		e.cellMinY = minY;
+		e.cellMaxX = maxX;
+		e.cellMaxY = maxY;
+		e.hashed = true;
+		e.oversized = (long)(maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS;
+		if(e.oversized) {
+			large.add(e);
+			return;
+		}
+		for(int cy = minY; cy <= maxY; cy++) {
+			for(int cx = minX; cx <= maxX; cx++) {
+				add(bucket(cx, cy, true), e);
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void add(ArrayList<?> bucket, Entity e) {
+		if(bucket.isEmpty()) {
+			occupied++;
+		}
+		((ArrayList<Entity>)bucket).add(e);
+	}
+	
+	private int cell(double coordinate) {
+		double c = Math.floor(coordinate / cellSize);
+		return (int)Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, c));
+	}
+	
+	/**
+	 * Returns the bucket for the specified cell, creating it if {@code create} is {@code true}
+	 */
+	private ArrayList<?> bucket(int cx, int cy, boolean create) {
+		long key = ((long)cx << 32) | (cy & 0xffffffffL);
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while(buckets[i] != null) {
+			if(keys[i] == key) {
+				return buckets[i];
+			}
+			i = (i + 1) & mask;
+		}
+		if(!create) {
+			return null;
+		}
+		if((used + 1) * 2 > keys.length) {
+			// Dropping the empty cells is enough unless most of the table is really in use
+			rebuild((occupied + 1) * 4 > keys.length ? keys.length * 2 : keys.length);
+			return bucket(cx, cy, true);
+		}
+		keys[i] = key;
+		buckets[i] = new ArrayList<Entity>(4);
+		used++;
+		return buckets[i];
+	}
+	
+	/**
+	 * Rebuilds the table with the specified number of slots, keeping only the cells which hold Entities
+	 */
+	private void rebuild(int capacity) {
+		long[] oldKeys = keys;
+		ArrayList<?>[] oldBuckets = buckets;
+		keys = new long[capacity];
+		buckets = new ArrayList<?>[capacity];
+		used = 0;
+		int mask = keys.length - 1;
+		for(int j = 0; j < oldKeys.length; j++) {
+			// Cells which have been emptied are dropped here, rather than on every removal, which would break probing
+			if(oldBuckets[j] != null && !oldBuckets[j].isEmpty()) {
+				int i = hash(oldKeys[j]) & mask;
+				while(buckets[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				buckets[i] = oldBuckets[j];
+				used++;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of slots in the table, which grows only while most of its cells hold Entities
+	 */
+	int capacity() {
+		return keys.length;
+	}
+	
+	/**
+	 * Returns the number of cells holding at least one Entity
+	 */
+	int occupiedCells() {
+		return occupied;
+	}
+	
+	private static int hash(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+		return (int)(key ^ (key >>> 32));
+	}
+}
@@ -3,15 +3,30 @@ package jgame;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 
 public class Sprite implements Iterable<Sprite> {
 	
-	private final BufferedImage image;
+	private BufferedImage image;
+	/** The {@linkplain TextureAtlas} page holding this Sprite's image, and where in it, or {@code null} if it has none */
+	private BufferedImage page;
+	private int pageX, pageY;
+	/** The solid pixels of this Sprite's image, built on first use */
+	private PixelMask mask;
 	private Shape hitbox;
+	private Rectangle bounds;
 	protected final int rows, cols;
 	private final Sprite[] frames;
 	
+	/** Marks a cached angle whose copy would not fit in the budget, so it is drawn normally without trying again */
+	private static final BufferedImage UNCACHED = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+	
+	/** Copies of each image this Sprite draws, rotated to each cached angle and made on first use */
+	private IdentityHashMap<BufferedImage, BufferedImage[]> rotations;
+	private int angles;
+	private long maxBytes, usedBytes;
+	
 	/**
 	 * Creates a {@linkplain Sprite} with the given image
 	 * @param image The {@linkplain BufferedImage} for this sprite
@@ -64,6 +79,74 @@ public class Sprite implements Iterable<Sprite> {
 		return frames[index].image;
 	}
 	
+	/**
+	 * Draws this {@linkplain Sprite Sprite's} {@linkplain Sprite#getImage() image} with its top left corner at the
+	 * specified point. If the Sprite has been packed into a {@linkplain TextureAtlas}, this draws its region of the
+	 * atlas directly, rather than a separate image.
+	 * @param g The graphics to draw with
+	 * @param x The x coordinate to draw at
+	 * @param y The y coordinate to draw at
+	 */
+	public void draw(Graphics g, int x, int y) {
+		Sprite frame = currentFrame();
+		BufferedImage image = frame.image;
+		if(frame.page != null) {
+			int w = image.getWidth(), h = image.getHeight();
+			g.drawImage(frame.page, x, y, x + w, y + h, frame.pageX, frame.pageY, frame.pageX + w, frame.pageY + h, null);
+		} else {
+			g.drawImage(image, x, y, null);
+		}
+	}
+	
+	/**
+	 * Returns the single-image Sprite which should be drawn for this Sprite right now
+	 */
+	Sprite currentFrame() {
+		return frames[0];
+	}
+	
+	/**
+	 * Tells this Sprite which world it is being used in, so an {@linkplain Animation} can play against that world's
+	 * clock. Other Sprites do not change over time, so ignore it.
+	 */
+	void useClockOf(World world) {
+	}
+	
+	/**
+	 * Moves this Sprite's image into a region of a {@linkplain TextureAtlas} page, where it has already been copied
+	 */
+	synchronized void bind(BufferedImage page, int x, int y) {
+		this.image = page.getSubimage(x, y, image.getWidth(), image.getHeight());
+		this.page = page;
+		this.pageX = x;
+		this.pageY = y;
+		if(rotations != null) {	// Cached under the old image
+			rotations.clear();
+			usedBytes = 0;
+		}
+	}
+	
+	/**
+	 * Returns the mask of the solid pixels of the image this Sprite is currently drawn with, building it on first use
+	 */
+	PixelMask getMask() {
+		Sprite frame = currentFrame();
+		synchronized(frame) {
+			if(frame.mask == null) {
+				frame.mask = PixelMask.of(frame.image);
+			}
+			return frame.mask;
+		}
+	}
+	
+	/**
+	 * Returns whether this Sprite's image is part of a {@linkplain TextureAtlas}
+	 * @return Whether this Sprite has been packed into an atlas
+	 */
+	public boolean isPacked() {
+		return page != null;
+	}
+	
 	/**
 	 * Returns the {@linkplain Sprite} which is a division of this Sprite at the specified {@code index}. Indices
 	 * are indexed with zero at the top left corner of the image, progressing left to right, then top to bottom.
@@ -82,12 +165,30 @@ public class Sprite implements Iterable<Sprite> {
 	 */
 	public Shape getShape() {
 		if(hitbox == null) {
-			return new Rectangle(-image.getWidth()/2, -image.getHeight()/2, image.getWidth(), image.getHeight());
+			return getBounds();
 		} else {
 			return this.hitbox;
 		}
 	}
 	
+	/**
+	 * Returns a {@linkplain Rectangle} covering this {@linkplain Sprite Sprite's} image, centered about (0,0), which
+	 * is shared and must not be modified
+	 */
+	Rectangle getBounds() {
+		if(bounds == null) {
+			bounds = new Rectangle(-image.getWidth()/2, -image.getHeight()/2, image.getWidth(), image.getHeight());
+		}
+		return bounds;
+	}
+	
+	/**
+	 * Returns whether a hitbox has been set for this Sprite
+	 */
+	boolean hasHitbox() {
+		return hitbox != null;
+	}
+	
 	/**
 	 * Sets the hitbox for this {@linkplain Sprite}
 	 * @param shape The shape to use as a hitbox
@@ -96,6 +197,71 @@ public class Sprite implements Iterable<Sprite> {
 		this.hitbox = shape;
 	}
 	
+	/**
+	 * Enables drawing this {@linkplain Sprite} from copies of its image pre-rotated to {@code angles} evenly spaced
+	 * angles, when it is drawn by an {@linkplain Entity} with {@linkplain Entity.RotationMode#ROTATE}. Drawing an
+	 * image under a rotation is one of the slowest things Java2D does, while a pre-rotated copy only needs to be
+	 * moved into place, at the cost of memory and of rounding the rotation to the nearest cached angle.
+	 * <br><br>
+	 * Each copy is made the first time it is needed. Once the copies would use more than {@code maxBytes}, any
+	 * further angles are drawn normally instead.
+	 * @param angles The number of angles to cache in a full turn, or 0 to disable the cache
+	 * @param maxBytes The most memory the rotated copies may use, in bytes
+	 */
+	public synchronized void setRotationCache(int angles, long maxBytes) {
+		if(angles < 0 || maxBytes < 0) {
+			throw new IllegalArgumentException("Angle count and memory budget cannot be negative");
+		}
+		this.angles = angles;
+		this.maxBytes = maxBytes;
+		this.usedBytes = 0;
+		this.rotations = (angles > 0) ? new IdentityHashMap<>() : null;
+	}
+	
+	/**
+	 * Returns whether this {@linkplain Sprite} has a {@linkplain Sprite#setRotationCache(int, long) rotation cache}
+	 * @return Whether rotated copies of this Sprite are cached
+	 */
+	public synchronized boolean hasRotationCache() {
+		return rotations != null;
+	}
+	
+	/**
+	 * Returns a copy of {@code image}, which should be one of this Sprite's images, rotated to the cached angle
+	 * nearest {@code radians} about its center, or {@code null} if there is no cache or it is full
+	 */
+	synchronized BufferedImage getRotatedImage(BufferedImage image, double radians) {
+		if(rotations == null) {
+			return null;
+		}
+		BufferedImage[] copies = rotations.get(image);
+		if(copies == null) {
+			copies = new BufferedImage[angles];
+			rotations.put(image, copies);
+		}
+		double step = 2 * Math.PI / angles;
+		int index = Math.floorMod(Math.round(radians / step), angles);
+		if(copies[index] == null) {
+			// Check the budget before rotating, so a full cache costs nothing more than having none
+			Dimension size = Images.rotatedSize(image, index * step);
+			long bytes = 4L * size.width * size.height;
+			if(usedBytes + bytes > maxBytes) {
+				copies[index] = UNCACHED;
+				return null;
+			}
+			usedBytes += bytes;
+			copies[index] = Images.rotateImage(image, index * step);
+		}
+		return (copies[index] != UNCACHED) ? copies[index] : null;
+	}
+	
+	/**
+	 * Returns the memory used by this Sprite's rotated copies, in bytes
+	 */
+	synchronized long getRotationCacheBytes() {
+		return usedBytes;
+	}
+	
 	/**
 	 * Returns a {@linkplain Dimension} describing the size of the {@linkplain Sprite}
 	 * @return The Dimension of the sprite
@@ -0,0 +1,120 @@
+package jgame;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Packs the images of many {@linkplain Sprite Sprites} into a few large pages, so they are drawn from a handful of
+ * images instead of one each, which keeps them close together in memory and lets Java2D keep fewer images
+ * accelerated. Once packed, each Sprite draws its region of a page, and is otherwise used exactly as before.
+ * <br><br>
+ * Example usage:
+ * <br>{@code TextureAtlas atlas = new TextureAtlas(1024);}
+ * <br>{@code atlas.add(playerSheet);}
+ * <br>{@code atlas.add(enemyAnimation);}
+ * <br>{@code atlas.pack();}
+ * <br><br>
+ * Sprites should be packed before the game starts, since packing changes their images while they may be drawn.
+ */
+public class TextureAtlas {
+	
+	/** The space left around each image, so that smoothing never blends in a neighbouring image */
+	private static final int PADDING = 1;
+	
+	private final int pageSize;
+	private final Set<Sprite> pending = new LinkedHashSet<>();
+	private final List<BufferedImage> pages = new ArrayList<>();
+	
+	/**
+	 * Creates an empty {@linkplain TextureAtlas} whose pages are square, with the specified size
+	 * @param pageSize The width and height of each page
+	 */
+	public TextureAtlas(int pageSize) {
+		if(pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be positive");
+		}
+		this.pageSize = pageSize;
+	}
+	
+	/**
+	 * Adds a {@linkplain Sprite} to be packed by the next call to {@linkplain TextureAtlas#pack()}. Every frame of
+	 * a divided Sprite or an {@linkplain Animation} is added. Images too large to fit on a page are left as they
+	 * are.
+	 * @param sprite The Sprite to add
+	 */
+	public void add(Sprite sprite) {
+		if(sprite instanceof Animation animation) {
+			for(int i = 0; i < animation.getFrameCount(); i++) {
+				add(animation.getFrame(i));
+			}
+		} else {
+			for(Sprite frame : sprite) {
+				if(!frame.isPacked()) {
+					pending.add(frame);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Packs every {@linkplain Sprite} added since the last call into new pages, tallest first, in rows across each
+	 * page, and moves each Sprite's image into its region
+	 * @return The pages created by this call
+	 */
+	public List<BufferedImage> pack() {
+		List<Sprite> sprites = new ArrayList<>(pending);
+		pending.clear();
+		sprites.removeIf(s -> s.getImage().getWidth() + PADDING > pageSize || s.getImage().getHeight() + PADDING > pageSize);
+		sprites.sort(Comparator.comparingInt((Sprite s) -> s.getImage().getHeight())
+				.thenComparingInt(s -> s.getImage().getWidth()).reversed());
+		
+		List<BufferedImage> created = new ArrayList<>();
+		BufferedImage page = null;
+		Graphics2D g = null;
+		int x = 0, y = 0, rowHeight = 0;
+		for(Sprite sprite : sprites) {
+			BufferedImage image = sprite.getImage();
+			int w = image.getWidth() + PADDING, h = image.getHeight() + PADDING;
+			if(page != null && x + w > pageSize) {	// Start a new row
+				x = 0;
+				y += rowHeight;
+				rowHeight = 0;
+			}
+			if(page == null || y + h > pageSize) {	// Start a new page
+				if(g != null) {
+					g.dispose();
+				}
+				page = Images.createCompatibleImage(pageSize, pageSize);
+				g = page.createGraphics();
+				g.setComposite(AlphaComposite.Src);
+				created.add(page);
+				x = 0;
+				y = 0;
+				rowHeight = 0;
+			}
+			g.drawImage(image, x, y, null);
+			sprite.bind(page, x, y);
+			x += w;
+			rowHeight = Math.max(rowHeight, h);
+		}
+		if(g != null) {
+			g.dispose();
+		}
+		pages.addAll(created);
+		return created;
+	}
+	
+	/**
+	 * Returns every page this {@linkplain TextureAtlas} has packed
+	 * @return A read-only list of the pages
+	 */
+	public List<BufferedImage> getPages() {
+		return Collections.unmodifiableList(pages);
+	}
+}
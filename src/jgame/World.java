@@ -5,17 +5,78 @@ import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 public class World {
 	
+	/**
+	 * Every possible set of touched edges, indexed by a bit for each of {@linkplain Direction#cardinals()}, in the
+	 * same order as {@linkplain World#bounds}
+	 */
+	private static final List<Set<Direction>> edgeSets = new ArrayList<>(16);
+	static {
+		Direction[] cardinals = Direction.cardinals();
+		for(int mask = 0; mask < 16; mask++) {
+			EnumSet<Direction> set = EnumSet.noneOf(Direction.class);
+			for(int i = 0; i < cardinals.length; i++) {
+				if((mask & (1 << i)) != 0) {
+					set.add(cardinals[i]);
+				}
+			}
+			edgeSets.add(Collections.unmodifiableSet(set));
+		}
+	}
+	
+	/**
+	 * For each class of {@linkplain Entity}, every class and interface it can be assigned to, so each
+	 * Entity can be placed in the bucket for every type it could be looked up by.
+	 */
+	private static final ClassValue<Class<?>[]> supertypes = new ClassValue<>() {
+		@Override
+		protected Class<?>[] computeValue(Class<?> type) {
+			Set<Class<?>> out = new LinkedHashSet<>();
+			for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				out.add(c);
+				addInterfaces(c, out);
+			}
+			return out.toArray(new Class<?>[0]);
+		}
+		
+		private void addInterfaces(Class<?> c, Set<Class<?>> out) {
+			for(Class<?> i : c.getInterfaces()) {
+				if(out.add(i)) {
+					addInterfaces(i, out);
+				}
+			}
+		}
+	};
+	
 	/**
 	 * This is an {@linkplain Entity} for checking collisions with {@linkplain World} boundaries, via
 	 * {@linkplain Entity#collisionWithType(Class) Entity.collisionWithType(World.Edge.class)}, or similar
 	 * methods
+	 * <br><br>
+	 * Each edge covers everything beyond one side of the world, so colliding with one only takes a single
+	 * comparison against the bounds of an Entity.
+	 * @see World#edgesTouching(Entity)
 	 */
 	public class Edge extends Entity {
 		
@@ -23,7 +84,10 @@ public class World {
 		 * The {@linkplain Direction} this wall occupies, e.g. the right edge of the world has the direction {@linkplain Direction#EAST EAST}
 		 */
 		public final Direction direction;
-
+		
+		/** The position of the boundary line, along the axis of {@linkplain Edge#direction} */
+		private final int boundary;
+		
 		private Edge(Direction direction, Dimension size) {
 			this.color = Color.MAGENTA;
 			this.fill = true;
@@ -36,6 +100,31 @@ public class World {
 				case EAST	-> this.shape = new Rectangle(size.width / 2, -large / 2, large, large);
 				default		-> throw new IllegalArgumentException(direction.name() + " is not a valid direction for an edge.");
 			}
+			this.boundary = switch (direction) {
+				case NORTH	-> -(size.height / 2);
+				case SOUTH	-> size.height / 2;
+				case WEST	-> -(size.width / 2);
+				default		-> size.width / 2;
+			};
+		}
+		
+		/**
+		 * Returns whether an {@linkplain Entity} with the specified bounds extends past this edge. Since each edge
+		 * covers everything beyond one side of the world, this only needs to compare one side of the bounds, which
+		 * must be the tight bounds of the Entity's outline for the answer to be exact.
+		 * @param bounds The tight bounds of the Entity, in world coordinates
+		 * @return Whether the Entity is touching this edge
+		 */
+		boolean touches(Rectangle2D bounds) {
+			if(bounds.isEmpty()) {
+				return false;
+			}
+			return switch (direction) {
+				case NORTH	-> bounds.getMinY() < y + boundary;
+				case SOUTH	-> bounds.getMaxY() > y + boundary;
+				case WEST	-> bounds.getMinX() < x + boundary;
+				default		-> bounds.getMaxX() > x + boundary;
+			};
 		}
 		
 		@Override
@@ -44,52 +133,212 @@ public class World {
 		}
 		
 		public void setup() {}
-
+		
 		public void update() {}
 		
 	}
 	
-	private class WorldPanel extends JPanel {
+	/**
+	 * Additions and removals requested by one thread while Entities are being updated in parallel
+	 */
+	private static class DeferredChanges {
+		final ArrayList<Entity> toAdd = new ArrayList<>();
+		final ArrayList<Entity> toRemove = new ArrayList<>();
+	}
+	
+	/**
+	 * Updates a range of {@linkplain ParallelUpdate} Entities, splitting the range between threads
+	 */
+	@SuppressWarnings("serial")	// Never serialized
+	private static class UpdateTask extends RecursiveAction {
+		
+		/** Ranges smaller than this are updated on a single thread */
+		private static final int THRESHOLD = 256;
 		
-		private Sprite bgImage;
+		private final List<Entity> entities;
+		private final int start, end;
+		
+		UpdateTask(List<Entity> entities, int start, int end) {
+			this.entities = entities;
+			this.start = start;
+			this.end = end;
+		}
 		
 		@Override
-		public Dimension getPreferredSize() {
-			if(frameSize != null) {
-				return frameSize;
-			} else if(size != null) {
-				return size;
+		protected void compute() {
+			if(end - start <= THRESHOLD) {
+				for(int i = start; i < end; i++) {
+					Entity e = entities.get(i);
+					e.update();
+					e.normalizeRotation();
+				}
 			} else {
-				return super.getPreferredSize();
+				int middle = (start + end) >>> 1;
+				invokeAll(new UpdateTask(entities, start, middle), new UpdateTask(entities, middle, end));
 			}
 		}
+	}
+	
+	private class WorldPanel extends JPanel {
+		
+		@Override
+		public Dimension getPreferredSize() {
+			return preferredViewSize(super.getPreferredSize());
+		}
 		
 		@Override
 		public void paintComponent(Graphics g) {
 			Graphics2D g2 = (Graphics2D) g.create();
-			g2.setPaint(bg);
-			g2.fillRect(0, 0, getWidth(), getHeight());
-			g2.transform(getWorldTransform());
-			
-			if(size != null) {
-				g2.setClip(-size.width/2, -size.height/2, size.width, size.height);
-				g2.setPaint(fill);
-				g2.fillRect(-size.width/2, -size.height/2, size.width, size.height);
+			render(g2, getWidth(), getHeight());
+			g2.dispose();
+			frameStats.record(System.nanoTime());
+		}
+	}
+	
+	/**
+	 * The Entities drawn at one depth, in the order they were added, and, if the layer is static, the image they
+	 * were last drawn to
+	 */
+	private static class Layer {
+		
+		final ArrayList<Entity> entities = new ArrayList<>();
+		boolean isStatic, dirty = true;
+		/** Whether this layer is waiting to have removed Entities pruned */
+		boolean pruning;
+		BufferedImage cache;
+		/** The transform from world coordinates to the cached image's pixels when it was drawn */
+		AffineTransform cacheTransform;
+	}
+	
+	/**
+	 * The surface the world is drawn on when {@linkplain Game.RenderMode#ACTIVE actively rendering}. It ignores
+	 * repaint requests, since the game loop draws to it directly.
+	 */
+	@SuppressWarnings("serial")	// Never serialized
+	private class WorldCanvas extends Canvas {
+		
+		WorldCanvas() {
+			setIgnoreRepaint(true);
+			setBackground(Color.BLACK);
+		}
+		
+		@Override
+		public Dimension getPreferredSize() {
+			return preferredViewSize(super.getPreferredSize());
+		}
+	}
+	
+	private Dimension preferredViewSize(Dimension fallback) {
+		if(frameSize != null) {
+			return frameSize;
+		} else if(size != null) {
+			return size;
+		} else {
+			return fallback;
+		}
+	}
+	
+	/**
+	 * Draws the whole world, filling an area of the specified size, which is also how a headless world can be drawn
+	 * to an image
+	 */
+	void render(Graphics2D g2, int width, int height) {
+		AffineTransform base = g2.getTransform();
+		g2.setPaint(bg);
+		g2.fillRect(0, 0, width, height);
+		AffineTransform worldTransform = getWorldTransform();
+		g2.transform(worldTransform);
+		
+		if(size != null) {
+			g2.setClip(-size.width/2, -size.height/2, size.width, size.height);
+			g2.setPaint(fill);
+			g2.fillRect(-size.width/2, -size.height/2, size.width, size.height);
+		}
+		
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		
+		if(bgImage != null) {
+			g2.drawImage(bgImage.getImage(),-bgImage.getImage().getWidth()/2,-bgImage.getImage().getHeight()/2,null);
+		}
+		if(drawEntity) {
+			synchronized(lock) {
+				renderAlpha = computeRenderAlpha();
+				Rectangle2D view = (culling && !Game.debugMode) ? getVisibleArea(worldTransform, width, height) : null;
+				frameDrawn = 0;
+				frameCulled = 0;
+				for(Layer layer : layers.values()) {
+					if(layer.isStatic) {
+						drawStaticLayer(layer, g2, base, worldTransform, width, height, view);
+					} else {
+						drawEntities(layer.entities, g2, view);
+					}
+				}
+				drawnCount = frameDrawn;
+				culledCount = frameCulled;
 			}
-			
-			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-			if(bgImage != null) {
-				g2.drawImage(bgImage.getImage(),-bgImage.getImage().getWidth()/2,-bgImage.getImage().getHeight()/2,null);
+		}
+	}
+	
+	private void drawEntities(List<Entity> entities, Graphics2D g2, Rectangle2D view) {
+		for(int i = 0; i < entities.size(); i++) {
+			Entity e = entities.get(i);
+			Sprite sprite = e.sprite;
+			if(sprite != null) {
+				sprite.useClockOf(this);
 			}
-			if(drawEntity) {
-				for(Entity e : entities) {
-					e.rawPaint(g2);
-				}
+			if(view != null && isOffScreen(e, view)) {
+				frameCulled++;
+			} else {
+				e.rawPaint(g2);
+				frameDrawn++;
 			}
 		}
 	}
 	
+	/**
+	 * Draws a static layer from its cached image, first redrawing the image if the layer has changed or the view
+	 * has moved. The image matches the resolution of the device being drawn to, so it is copied without scaling.
+	 */
+	private void drawStaticLayer(Layer layer, Graphics2D g2, AffineTransform base, AffineTransform worldTransform,
+			int width, int height, Rectangle2D view) {
+		double sx = Math.abs(base.getScaleX()), sy = Math.abs(base.getScaleY());
+		if(!(sx > 0) || !(sy > 0)) {
+			sx = sy = 1;
+		}
+		int pixelWidth = (int)Math.ceil(width * sx), pixelHeight = (int)Math.ceil(height * sy);
+		if(pixelWidth <= 0 || pixelHeight <= 0) {
+			return;
+		}
+		AffineTransform pixelTransform = AffineTransform.getScaleInstance(sx, sy);
+		pixelTransform.concatenate(worldTransform);
+		if(layer.cache == null || layer.cache.getWidth() != pixelWidth || layer.cache.getHeight() != pixelHeight) {
+			GraphicsConfiguration config = (this.view != null) ? this.view.getGraphicsConfiguration() : null;
+			layer.cache = (config != null)
+					? config.createCompatibleImage(pixelWidth, pixelHeight, Transparency.TRANSLUCENT)
+					: new BufferedImage(pixelWidth, pixelHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+			layer.dirty = true;
+		}
+		if(layer.dirty || !pixelTransform.equals(layer.cacheTransform)) {
+			Graphics2D c = layer.cache.createGraphics();
+			c.setComposite(AlphaComposite.Clear);
+			c.fillRect(0, 0, pixelWidth, pixelHeight);
+			c.setComposite(AlphaComposite.SrcOver);
+			c.transform(pixelTransform);
+			if(size != null) {
+				c.clip(new Rectangle(-size.width/2, -size.height/2, size.width, size.height));
+			}
+			c.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			drawEntities(layer.entities, c, view);
+			c.dispose();
+			layer.cacheTransform = pixelTransform;
+			layer.dirty = false;
+		}
+		AffineTransform saved = g2.getTransform();
+		g2.setTransform(base);
+		g2.drawImage(layer.cache, AffineTransform.getScaleInstance(1 / sx, 1 / sy), null);
+		g2.setTransform(saved);
+	}
+	
 	/**
 	 * This class handles the position of the camera. If the world's {@linkplain World#zoomType zoomType} is
 	 * set to {@linkplain ZoomType#MANUAL}, the camera also controls zoom.
@@ -141,7 +390,7 @@ public class World {
 				y += dy;
 			}
 		}
-
+		
 		public double x,y,rotation,sx,sy;
 		private final PanManager host;
 		private PanManager pan;
@@ -154,7 +403,7 @@ public class World {
 			rotation = 0;
 			host = new PanManager();
 		}
-				
+		
 		/**
 		 * Moves the camera to the specified position immediately
 		 * @param x The horizontal position to move to
@@ -222,6 +471,12 @@ public class World {
 	Paint 	fill = Color.DARK_GRAY,
 			bg = Color.BLACK;
 	private WorldPanel panel;
+	private WorldCanvas canvas;
+	/** Whichever of the panel or canvas the world is currently drawn on */
+	private Component view;
+	private final FrameStats frameStats = new FrameStats();
+	private Sprite bgImage;
+	private final boolean headless;
 	boolean running = true, drawEntity = true;
 	
 	Dimension frameSize, size;
@@ -232,12 +487,75 @@ public class World {
 			entities 	= new ArrayList<>();
 	private final ArrayList<Entity> toAdd = new ArrayList<>();
 	private final ArrayList<Entity> toRemove = new ArrayList<>();
+	/** Pooled Entities removed this update, returned to their pools once any which were added back are in place */
+	private final ArrayList<Entity> toRecycle = new ArrayList<>();
 	private ArrayList<Edge> bounds = null;
+	private final SpatialHash spatialHash = new SpatialHash(64);
+	/** Entities whose geometry has changed since they were placed in the spatial hash, such as ones moved by others */
+	private final ConcurrentLinkedQueue<Entity> toRehash = new ConcurrentLinkedQueue<>();
+	private final HashMap<Class<?>, ArrayList<Entity>> typeBuckets = new HashMap<>();
+	private final HashMap<Class<?>, List<Entity>> typeViews = new HashMap<>();
+	private final HashSet<Class<?>> affectedTypes = new HashSet<>();
+	private boolean preserveOrder = true;
+	private boolean culling = true;
+	private volatile int drawnCount, culledCount;
+	private int frameDrawn, frameCulled;
+	/** Every layer which has held an Entity or been made static, from lowest to highest */
+	private final TreeMap<Integer, Layer> layers = new TreeMap<>();
+	private final ArrayList<Layer> affectedLayers = new ArrayList<>();
+	
+	/** The pool for updating {@linkplain ParallelUpdate} Entities, or {@code null} to update them in order */
+	private ForkJoinPool updatePool;
+	/** Whether Entities are being updated in parallel, so changes to the world must be deferred */
+	private volatile boolean deferring;
+	private final ConcurrentLinkedQueue<DeferredChanges> deferred = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<DeferredChanges> threadChanges = ThreadLocal.withInitial(() -> {
+		DeferredChanges changes = new DeferredChanges();
+		deferred.add(changes);
+		return changes;
+	});
 	
 	public Camera camera = new Camera();
 	
+	/** Held while the world is being updated or drawn, so the two never overlap */
+	final Object lock = new Object();
+	
+	/** Whether entities should be drawn between their last two positions, for loops which draw between updates */
+	boolean interpolate;
+	/** The time of the latest update, and the time between updates, used to find how far between updates to draw */
+	volatile long lastTickNanos, tickNanos;
+	/** The time every {@linkplain Animation} used in this world is played against, moved forward once per update */
+	private volatile long animationNanos;
+	/** The time the next update is scheduled for, set by the game loop */
+	long scheduledTickNanos;
+	/** How far between the last two updates the current frame is being drawn, from 0 to 1 */
+	double renderAlpha = 1;
+	
+	private final Random random = new Random();
+	private long seed;
+	
+	/**
+	 * Creates a {@linkplain World} in a new window, unless the environment has no display, in which case the world
+	 * is {@linkplain World#World(boolean) headless}
+	 */
 	public World() {
-		setupSwingComponents();
+		this(GraphicsEnvironment.isHeadless());
+	}
+	
+	/**
+	 * Creates a {@linkplain World}, which is either shown in a new window, or, if {@code headless} is {@code true},
+	 * has no window at all. A headless world still updates its {@linkplain Entity Entities} and checks collisions,
+	 * but is never drawn, so it can run without a display, such as on a server or in tests.
+	 * @param headless Whether to create the world without a window
+	 * @see Game#step(int)
+	 */
+	public World(boolean headless) {
+		typeBuckets.put(Entity.class, entities);
+		this.headless = headless;
+		setSeed(ThreadLocalRandom.current().nextLong());
+		if(!headless) {
+			setupSwingComponents();
+		}
 	}
 	
 	private void setupSwingComponents() {
@@ -252,11 +570,53 @@ public class World {
 		panel.addMouseWheelListener(Controller.listener);
 		panel.addKeyListener(Controller.listener);
 		panel.setFocusable(true);
+		view = panel;
 		frame.add(panel);
 		frame.pack();
 		frame.setLocationRelativeTo(null);
 	}
 	
+	/**
+	 * Switches between drawing on a Swing panel, repainted on the event dispatch thread, and drawing directly to a
+	 * {@linkplain Canvas} from the game loop. This should only be called before the window is shown.
+	 */
+	void setRenderMode(Game.RenderMode mode) {
+		if(frame == null) {
+			return;
+		}
+		Component next;
+		if(mode == Game.RenderMode.ACTIVE) {
+			if(canvas == null) {
+				canvas = new WorldCanvas();
+				canvas.addMouseListener(Controller.listener);
+				canvas.addMouseMotionListener(Controller.listener);
+				canvas.addMouseWheelListener(Controller.listener);
+				canvas.addKeyListener(Controller.listener);
+				canvas.setFocusable(true);
+			}
+			next = canvas;
+		} else {
+			next = panel;
+		}
+		if(next != view) {
+			frame.remove(view);
+			frame.add(next);
+			view = next;
+			frame.pack();
+			frame.setLocationRelativeTo(null);
+		}
+	}
+	
+	/**
+	 * Returns the measurements of how evenly this {@linkplain World} has been drawn, which can be used to compare
+	 * the {@linkplain Game.RenderMode render modes}
+	 * @return The frame pacing statistics for this world
+	 * @see Game#setRenderMode(Game.RenderMode)
+	 */
+	public FrameStats getFrameStats() {
+		return frameStats;
+	}
+	
 	/**
 	 * Sets the {@linkplain Paint} to be used filling the parts of the window not covered by the {@linkplain World}.
 	 * <br><br>
@@ -283,7 +643,7 @@ public class World {
 	 * @param fill The desired image
 	 */
 	public void setFillSprite(Sprite fill) {
-		panel.bgImage = fill;
+		bgImage = fill;
 	}
 	
 	/**
@@ -291,7 +651,7 @@ public class World {
 	 * @return The current background color
 	 */
 	public Color getBackgroundColor() {
-		return panel.getBackground();
+		return (panel != null) ? panel.getBackground() : Color.BLACK;
 	}
 	
 	/**
@@ -299,7 +659,7 @@ public class World {
 	 * @return The current background image
 	 */
 	public Sprite getBackgroundSprite() {
-		return panel.bgImage;
+		return bgImage;
 	}
 	
 	/**
@@ -307,10 +667,14 @@ public class World {
 	 * <br><br>
 	 * Example usage: If {@code class Enemy extends Entity}, all Enemies could be collected via
 	 * <br>{@code List<Enemy> enemies = world.getAllOfType(Enemy.class)}
+	 * <br><br>
+	 * The returned list is a read-only view, which is kept up to date as Entities are added to and removed from the
+	 * world. Copy it if a snapshot is needed.
 	 * @param <T> The class to collect. Must be a subclass of Entity
 	 * @param type The class to collect. Must be a subclass of Entity 
 	 * @return A {@linkplain List} containing all the Entities in the world which
 	 * are of class type or a subclass of type
+	 * @see World#forEachOfType(Class, Consumer)
 	 */
 	@SuppressWarnings("unchecked")
 	public <T extends Entity> List<T> getAllOfType(Class<T> type){
@@ -321,12 +685,166 @@ public class World {
 				return new ArrayList<>(0);
 			}
 		}
-		return (List<T>)
-				entities.stream()
-				.filter(e->type.isAssignableFrom(e.getClass()))
-				.collect(Collectors.toList());
+		List<Entity> view = typeViews.get(type);
+		if(view == null) {
+			if(deferring) {	// Other threads may be reading the maps, so they cannot be changed
+				ArrayList<Entity> bucket = typeBuckets.get(type);
+				return (List<T>)((bucket == null) ? Collections.emptyList() : Collections.unmodifiableList(bucket));
+			}
+			view = Collections.unmodifiableList(bucket(type));
+			typeViews.put(type, view);
+		}
+		return (List<T>)view;
 	}
-
+	
+	/**
+	 * Performs the given action on every {@linkplain Entity} in the world which extends the specified class. Unlike
+	 * {@linkplain World#getAllOfType(Class)}, this does not create any objects.
+	 * <br><br>
+	 * Example usage: If {@code class Enemy extends Entity}, all Enemies could be pushed right via
+	 * <br>{@code world.forEachOfType(Enemy.class, e -> e.x += 5)}
+	 * @param <T> The class to visit. Must be a subclass of Entity
+	 * @param type The class to visit. Must be a subclass of Entity
+	 * @param action The action to perform on each matching Entity
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Entity> void forEachOfType(Class<T> type, Consumer<? super T> action) {
+		List<? extends Entity> list = type.equals(Edge.class) ? bounds : typeBuckets.get(type);
+		if(list != null) {
+			for(int i = 0; i < list.size(); i++) {
+				action.accept((T)list.get(i));
+			}
+		}
+	}
+	
+	private ArrayList<Entity> bucket(Class<?> type) {
+		ArrayList<Entity> bucket = typeBuckets.get(type);
+		if(bucket == null) {
+			bucket = new ArrayList<>();
+			typeBuckets.put(type, bucket);
+		}
+		return bucket;
+	}
+	
+	/**
+	 * Finds {@linkplain Entity Entities} of the specified type which collide with {@code e}, checking only those
+	 * in nearby cells of the world's spatial hash. If {@code out} is {@code null}, returns the first collision
+	 * found, otherwise adds every collision to {@code out} and returns {@code null}
+	 */
+	<T extends Entity> T findCollision(Entity e, Class<T> type, List<T> out) {
+		if(type.equals(Edge.class)) {
+			if(bounds != null) {
+				Rectangle2D area = e.getGeometry().getTightBounds();
+				for(Edge edge : bounds) {
+					if(edge.touches(area)) {
+						if(out == null) {
+							return type.cast(edge);
+						}
+						out.add(type.cast(edge));
+					}
+				}
+			}
+			return null;
+		}
+		ArrayList<Entity> bucket = typeBuckets.get(type);
+		if(bucket == null) {
+			return null;
+		}
+		Rectangle2D area = e.getGeometry().bounds;
+		if(bucket.size() <= spatialHash.cellsCovering(area)) {
+			// Few enough candidates that checking each is cheaper than walking the cells
+			for(int i = 0; i < bucket.size(); i++) {
+				Entity other = bucket.get(i);
+				if(e.collidesWith(other)) {
+					if(out == null) {
+						return type.cast(other);
+					}
+					out.add(type.cast(other));
+				}
+			}
+			return null;
+		}
+		if(!deferring) {	// Other threads may be reading the hash
+			rehashMoved();
+		}
+		Entity found = spatialHash.find(area, other -> {
+			if(type.isInstance(other) && e.collidesWith(other)) {
+				if(out == null) {
+					return true;
+				}
+				out.add(type.cast(other));
+			}
+			return false;
+		});
+		return type.cast(found);
+	}
+	
+	/**
+	 * Returns the set of {@linkplain Edge Edges} of the {@linkplain World} which the specified {@linkplain Entity}
+	 * is touching, as the {@linkplain Edge#direction directions} of those edges. If the world has no
+	 * {@linkplain World#setSize(Dimension) size}, it has no edges, and this is always empty.
+	 * <br><br>
+	 * The returned set cannot be modified, and is shared, so this does not create any objects.
+	 * @param e The Entity to check
+	 * @return The directions of all the edges the Entity touches
+	 */
+	public Set<Direction> edgesTouching(Entity e) {
+		int mask = 0;
+		if(bounds != null) {
+			Rectangle2D area = e.getGeometry().getTightBounds();
+			for(int i = 0; i < bounds.size(); i++) {
+				if(bounds.get(i).touches(area)) {
+					mask |= 1 << i;
+				}
+			}
+		}
+		return edgeSets.get(mask);
+	}
+	
+	/**
+	 * Queues the specified {@linkplain Entity}, whose collision geometry has just been rebuilt, to be moved to its
+	 * new cells in the spatial hash before the next query. Called from whichever thread rebuilt the geometry.
+	 */
+	void rehashLater(Entity e) {
+		toRehash.add(e);
+	}
+	
+	/**
+	 * Moves every queued {@linkplain Entity} to the cells matching its current geometry
+	 */
+	private void rehashMoved() {
+		Entity e;
+		while((e = toRehash.poll()) != null) {
+			if(e.world == this) {	// Otherwise it has moved to another world since it was queued
+				spatialHash.update(e);
+			}
+			e.rehashPending = false;
+		}
+	}
+	
+	/**
+	 * Sets the size of the cells used to look up nearby {@linkplain Entity Entities} when checking collisions.
+	 * Cells should be around the size of a typical Entity; if unspecified, defaults to 64.
+	 * @param cellSize The width and height of each cell
+	 * @see Entity#collisionWithType(Class)
+	 */
+	public void setCellSize(double cellSize) {
+		spatialHash.setCellSize(cellSize);
+		spatialHash.clear();
+		for(Entity e : entities) {
+			spatialHash.insert(e);
+		}
+	}
+	
+	/**
+	 * Returns the size of the cells used to look up nearby {@linkplain Entity Entities}
+	 * @return The width and height of each cell
+	 * @see World#setCellSize(double)
+	 */
+	public double getCellSize() {
+		return spatialHash.getCellSize();
+	}
+	
 	/**
 	 * Adds the specified {@linkplain Entity} to the world at the point (0,0)
 	 * @param e The Entity to add
@@ -342,7 +860,11 @@ public class World {
 	 * @param y The Entity's pixel y position
 	 */
 	public void add(Entity e, double x, double y) {
-		toAdd.add(e);
+		if(deferring) {
+			threadChanges.get().toAdd.add(e);
+		} else {
+			toAdd.add(e);
+		}
 		e.x = x;
 		e.y = y;
 		e.world = this;
@@ -354,20 +876,122 @@ public class World {
 	 * @param e The Entity to remove
 	 */
 	public void remove(Entity e) {
-		toRemove.add(e);
+		if(deferring) {
+			threadChanges.get().toRemove.add(e);
+		} else {
+			toRemove.add(e);
+		}
 	}
 	
 	/**
 	 * Removes all specified {@linkplain Entity Entities} from the {@linkplain World}
 	 * @param e The {@linkplain Collection} of Entities to remove
 	 */
-	public void removeAll(Collection<Entity> e) {
-		toRemove.addAll(e);
+	public void removeAll(Collection<? extends Entity> e) {
+		if(deferring) {
+			threadChanges.get().toRemove.addAll(e);
+		} else {
+			toRemove.addAll(e);
+		}
 	}
-
+	
+	/**
+	 * Adds all specified {@linkplain Entity Entities} to the {@linkplain World}, each at its current position
+	 * @param e The {@linkplain Collection} of Entities to add
+	 */
+	public void addAll(Collection<? extends Entity> e) {
+		List<Entity> pending = deferring ? threadChanges.get().toAdd : toAdd;
+		pending.addAll(e);
+		for(Entity entity : e) {
+			entity.world = this;
+			entity.setup();
+		}
+	}
+	
+	/**
+	 * Sets whether removing {@linkplain Entity Entities} keeps the remaining Entities in the order they were added,
+	 * which is the order they are updated and drawn in. Keeping the order takes a single pass over all Entities on
+	 * any update where Entities were removed; not keeping it instead moves the last Entity into the place of each
+	 * removed one, which takes constant time per removal. If unspecified, order is preserved.
+	 * @param preserveOrder Whether removals should keep Entities in order
+	 */
+	public void setPreserveOrder(boolean preserveOrder) {
+		this.preserveOrder = preserveOrder;
+	}
+	
+	/**
+	 * Sets how many threads are used to update {@linkplain Entity Entities} which implement {@linkplain ParallelUpdate}.
+	 * With a parallelism of one, the default, all Entities are updated in order on the game's thread.
+	 * @param threads The number of threads to update Entities with
+	 * @see ParallelUpdate
+	 */
+	public void setParallelism(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		}
+		if(updatePool != null) {
+			updatePool.shutdown();
+		}
+		updatePool = (threads > 1) ? new ForkJoinPool(threads) : null;
+	}
+	
+	/**
+	 * Returns how many threads are used to update {@linkplain ParallelUpdate} Entities
+	 * @return The number of threads used for updates
+	 * @see World#setParallelism(int)
+	 */
+	public int getParallelism() {
+		return (updatePool != null) ? updatePool.getParallelism() : 1;
+	}
+	
+	/**
+	 * Returns the pool used to update {@linkplain ParallelUpdate} Entities, or {@code null} if the parallelism is one
+	 */
+	ForkJoinPool getUpdatePool() {
+		return updatePool;
+	}
+	
+	/**
+	 * Returns the time every {@linkplain Animation} drawn in this world is played against, which only moves forward
+	 * once per update, so it costs nothing to read and every Entity drawn in the same frame sees the same time
+	 */
+	long getAnimationClock() {
+		return animationNanos;
+	}
+	
+	/**
+	 * Moves the clock this world's {@linkplain Animation Animations} are played against forward, once per update
+	 */
+	void advanceAnimationClock(long nanos) {
+		animationNanos += nanos;
+	}
+	
+	/**
+	 * Moves the animation clock back to zero, so a {@linkplain Game#replay(java.io.File) replayed} game's
+	 * {@linkplain Animation Animations} play as they did when it was recorded
+	 */
+	void resetAnimationClock() {
+		animationNanos = 0;
+	}
+	
+	/**
+	 * Returns the spatial hash used to find nearby Entities when checking collisions
+	 */
+	SpatialHash getSpatialHash() {
+		return spatialHash;
+	}
+	
+	/**
+	 * Returns the Entities drawn in the specified layer, in the order they are drawn
+	 */
+	List<Entity> getLayerEntities(int layer) {
+		Layer l = layers.get(layer);
+		return (l == null) ? Collections.emptyList() : Collections.unmodifiableList(l.entities);
+	}
+	
 	/**
 	 * Returns the {@linkplain JFrame} this {@linkplain World} is in.
-	 * @return This world's host frame
+	 * @return This world's host frame, or {@code null} if the world is {@linkplain World#isHeadless() headless}
 	 */
 	public JFrame getFrame() {
 		return frame;
@@ -399,18 +1023,123 @@ public class World {
 		return this.running;
 	}
 	
+	/**
+	 * Returns the random number generator for this {@linkplain World}. Every random choice which affects how the
+	 * game plays should come from it, so that a {@linkplain Game#replay(java.io.File) replayed} game plays out
+	 * exactly as it was recorded.
+	 * @return The world's random number generator
+	 * @see World#setSeed(long)
+	 */
+	public Random getRandom() {
+		return random;
+	}
+	
+	/**
+	 * Restarts the {@linkplain World#getRandom() random number generator} from the specified seed, so it produces
+	 * the same numbers every time. Unless set, the seed is chosen at random when the world is created.
+	 * @param seed The seed to use
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		random.setSeed(seed);
+	}
+	
+	/**
+	 * Returns the seed the {@linkplain World#getRandom() random number generator} was last started from
+	 * @return The current seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Returns whether this {@linkplain World} was created without a window
+	 * @return Whether the world is headless
+	 * @see World#World(boolean)
+	 */
+	public boolean isHeadless() {
+		return headless;
+	}
+	
 	void paint() {
-		panel.repaint();
+		if(view == canvas && canvas != null) {
+			renderActive();
+		} else if(panel != null) {
+			panel.repaint();
+		}
+	}
+	
+	/**
+	 * Draws the world straight to the canvas's back buffer and shows it, on the calling thread
+	 */
+	private void renderActive() {
+		if(!canvas.isDisplayable() || canvas.getWidth() <= 0 || canvas.getHeight() <= 0) {
+			return;
+		}
+		BufferStrategy strategy = canvas.getBufferStrategy();
+		if(strategy == null) {
+			canvas.createBufferStrategy(2);
+			strategy = canvas.getBufferStrategy();
+		}
+		do {
+			do {
+				Graphics2D g2 = (Graphics2D) strategy.getDrawGraphics();
+				try {
+					render(g2, canvas.getWidth(), canvas.getHeight());
+				} finally {
+					g2.dispose();
+				}
+			} while(strategy.contentsRestored());
+			strategy.show();
+		} while(strategy.contentsLost());
+		Toolkit.getDefaultToolkit().sync();
+		frameStats.record(System.nanoTime());
 	}
 	
 	void update() {
 		if(!running) {
 			return;
 		}
-		entities.removeAll(toRemove);
-		entities.addAll(toAdd);
+		lastTickNanos = scheduledTickNanos;
+		if(!toRemove.isEmpty()) {
+			removePending();
+		}
+		entities.ensureCapacity(entities.size() + toAdd.size());
+		for(Entity e : toAdd) {
+			if(e.slot >= 0) {
+				continue;	// Already in the world
+			}
+			e.slot = entities.size();
+			entities.add(e);
+			Class<?>[] types = supertypes.get(e.getClass());
+			if(e.typeSlots == null) {
+				e.typeSlots = new int[types.length];
+			}
+			for(int i = 0; i < types.length; i++) {
+				if(types[i] != Entity.class) {	// The bucket for Entity is the list of entities itself
+					ArrayList<Entity> bucket = bucket(types[i]);
+					e.typeSlots[i] = bucket.size();
+					bucket.add(e);
+				}
+			}
+			if(!e.hashed) {
+				spatialHash.insert(e);
+			}
+			Layer layer = layer(e.layer);
+			e.layerSlot = layer.entities.size();
+			layer.entities.add(e);
+			layer.dirty = true;
+		}
 		toAdd.clear();
 		toRemove.clear();
+		if(!toRecycle.isEmpty()) {
+			for(Entity e : toRecycle) {
+				if(e.slot < 0) {	// Not added straight back
+					e.pool.recycle(e);
+				}
+			}
+			toRecycle.clear();
+		}
 		
 		mouse = convertToWorldCoordinates(Controller.getMouse());
 		
@@ -419,26 +1148,400 @@ public class World {
 		}
 		
 		for(Entity e : entities) {
-			e.update();
+			spatialHash.update(e);	// Catch anything moved outside of its own update
+			if(interpolate) {
+				e.lastX = e.x;
+				e.lastY = e.y;
+				e.lastRotation = e.rotation;
+			}
+		}
+		if(updatePool == null) {
+			for(Entity e : entities) {
+				e.update();
+				e.normalizeRotation();
+				spatialHash.update(e);
+			}
+		} else {
+			updateInParallel();
 		}
 		camera.update();
 	}
 	
+	/**
+	 * Removes every Entity waiting to be removed in a single pass over the entity list, or, if order does not need to
+	 * be preserved, by moving the last Entity into each removed Entity's slot in the entity list, in each of its type
+	 * buckets, and in its layer
+	 */
+	private void removePending() {
+		int removed = 0;
+		for(Entity e : toRemove) {
+			if(e.slot >= 0 && !e.removing) {
+				e.removing = true;
+				spatialHash.remove(e);
+				if(preserveOrder) {
+					for(Class<?> type : supertypes.get(e.getClass())) {
+						affectedTypes.add(type);
+					}
+					Layer layer = layers.get(e.layer);
+					if(!layer.pruning) {
+						layer.pruning = true;
+						affectedLayers.add(layer);
+					}
+				}
+				removed++;
+			}
+		}
+		if(removed == 0) {
+			return;
+		}
+		if(preserveOrder) {
+			int kept = 0;
+			for(int i = 0; i < entities.size(); i++) {
+				Entity e = entities.get(i);
+				if(e.removing) {
+					e.slot = -1;
+				} else {
+					e.slot = kept;
+					entities.set(kept++, e);
+				}
+			}
+			entities.subList(kept, entities.size()).clear();
+		} else {
+			for(Entity e : toRemove) {
+				if(e.removing && e.slot >= 0) {
+					Entity last = entities.remove(entities.size() - 1);
+					if(last != e) {
+						entities.set(e.slot, last);
+						last.slot = e.slot;
+					}
+					e.slot = -1;
+					Class<?>[] types = supertypes.get(e.getClass());
+					for(int i = 0; i < types.length; i++) {
+						if(types[i] != Entity.class) {
+							swapRemove(typeBuckets.get(types[i]), types[i], e.typeSlots[i]);
+						}
+					}
+					swapRemove(layers.get(e.layer), e.layerSlot);
+				}
+			}
+		}
+		for(Class<?> type : affectedTypes) {
+			if(type != Entity.class) {
+				prune(typeBuckets.get(type), type);
+			}
+		}
+		affectedTypes.clear();
+		for(Layer layer : affectedLayers) {
+			int kept = 0;
+			for(int i = 0; i < layer.entities.size(); i++) {
+				Entity e = layer.entities.get(i);
+				if(!e.removing) {
+					e.layerSlot = kept;
+					layer.entities.set(kept++, e);
+				}
+			}
+			layer.entities.subList(kept, layer.entities.size()).clear();
+			layer.pruning = false;
+			layer.dirty = true;
+		}
+		affectedLayers.clear();
+		for(Entity e : toRemove) {
+			if(e.removing) {
+				e.removing = false;
+				if(e.pool != null) {
+					toRecycle.add(e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes the Entity at {@code index} in the bucket for {@code type} by moving the bucket's last Entity into its
+	 * place
+	 */
+	private static void swapRemove(ArrayList<Entity> bucket, Class<?> type, int index) {
+		Entity last = bucket.remove(bucket.size() - 1);
+		if(index < bucket.size()) {
+			bucket.set(index, last);
+			last.typeSlots[typeIndex(last, type)] = index;
+		}
+	}
+	
+	/**
+	 * Removes the Entity at {@code index} in the specified layer by moving the layer's last Entity into its place
+	 */
+	private static void swapRemove(Layer layer, int index) {
+		Entity last = layer.entities.remove(layer.entities.size() - 1);
+		if(index < layer.entities.size()) {
+			layer.entities.set(index, last);
+			last.layerSlot = index;
+		}
+		layer.dirty = true;
+	}
+	
+	/**
+	 * Removes every Entity being removed from the bucket for {@code type}, keeping the rest in order
+	 */
+	private static void prune(ArrayList<Entity> bucket, Class<?> type) {
+		int kept = 0;
+		for(int i = 0; i < bucket.size(); i++) {
+			Entity e = bucket.get(i);
+			if(!e.removing) {
+				if(kept != i) {
+					bucket.set(kept, e);
+					e.typeSlots[typeIndex(e, type)] = kept;
+				}
+				kept++;
+			}
+		}
+		bucket.subList(kept, bucket.size()).clear();
+	}
+	
+	/**
+	 * Returns where {@code type} is among the supertypes of the specified Entity's class, which is also where its
+	 * index in that type's bucket is kept
+	 */
+	private static int typeIndex(Entity e, Class<?> type) {
+		Class<?>[] types = supertypes.get(e.getClass());
+		for(int i = 0; ; i++) {
+			if(types[i] == type) {
+				return i;
+			}
+		}
+	}
+	
+	/**
+	 * Updates all {@linkplain ParallelUpdate} Entities across the update pool, after updating the rest in order,
+	 * then applies any additions and removals made during the update
+	 */
+	private void updateInParallel() {
+		for(Entity e : entities) {
+			if(!(e instanceof ParallelUpdate)) {
+				e.update();
+				e.normalizeRotation();
+				spatialHash.update(e);
+			}
+		}
+		List<Entity> concurrent = bucket(ParallelUpdate.class);
+		rehashMoved();
+		deferring = true;
+		try {
+			updatePool.invoke(new UpdateTask(concurrent, 0, concurrent.size()));
+		} finally {
+			deferring = false;
+		}
+		for(DeferredChanges changes : deferred) {
+			toAdd.addAll(changes.toAdd);
+			toRemove.addAll(changes.toRemove);
+			changes.toAdd.clear();
+			changes.toRemove.clear();
+		}
+		for(int i = 0; i < concurrent.size(); i++) {
+			spatialHash.update(concurrent.get(i));
+		}
+	}
+	
+	private Layer layer(int depth) {
+		Layer out = layers.get(depth);
+		if(out == null) {
+			out = new Layer();
+			layers.put(depth, out);
+		}
+		return out;
+	}
+	
+	/**
+	 * Moves an {@linkplain Entity} already in the world from one layer to the end of another
+	 */
+	void moveLayer(Entity e, int from, int to) {
+		Layer old = layers.get(from);
+		if(preserveOrder) {
+			old.entities.remove(e.layerSlot);
+			for(int i = e.layerSlot; i < old.entities.size(); i++) {
+				old.entities.get(i).layerSlot = i;
+			}
+			old.dirty = true;
+		} else {
+			swapRemove(old, e.layerSlot);
+		}
+		Layer layer = layer(to);
+		e.layerSlot = layer.entities.size();
+		layer.entities.add(e);
+		layer.dirty = true;
+	}
+	
+	/**
+	 * Sets whether the specified layer is static. A static layer is drawn into an image, which is reused every
+	 * frame until one of its {@linkplain Entity Entities} is {@linkplain Entity#invalidate() invalidated}, an
+	 * Entity is added to or removed from it, or the view moves. This makes layers which rarely change, such as
+	 * backgrounds and boards, almost free to draw, but changes to their Entities only appear once invalidated.
+	 * <br><br>
+	 * If unspecified, layers are not static.
+	 * @param layer The layer to change
+	 * @param isStatic Whether the layer should be cached
+	 * @see Entity#setLayer(int)
+	 */
+	public void setLayerStatic(int layer, boolean isStatic) {
+		synchronized(lock) {
+			Layer l = layer(layer);
+			l.isStatic = isStatic;
+			l.dirty = true;
+			if(!isStatic) {
+				l.cache = null;
+				l.cacheTransform = null;
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether the specified layer is static
+	 * @param layer The layer to check
+	 * @return Whether the layer is cached
+	 * @see World#setLayerStatic(int, boolean)
+	 */
+	public boolean isLayerStatic(int layer) {
+		Layer l = layers.get(layer);
+		return l != null && l.isStatic;
+	}
+	
+	/**
+	 * Marks the specified layer as changed, so that if it is {@linkplain World#setLayerStatic(int, boolean) static},
+	 * it is drawn again in the next frame
+	 * @param layer The layer to redraw
+	 * @see Entity#invalidate()
+	 */
+	public void invalidateLayer(int layer) {
+		Layer l = layers.get(layer);
+		if(l != null) {
+			l.dirty = true;
+		}
+	}
+	
+	/**
+	 * Returns the part of the {@linkplain World} which can be seen in a view of the specified size, or {@code null} if
+	 * it cannot be found
+	 */
+	private Rectangle2D getVisibleArea(AffineTransform worldTransform, double width, double height) {
+		Rectangle2D out;
+		try {
+			out = worldTransform.createInverse().createTransformedShape(new Rectangle2D.Double(0, 0, width, height)).getBounds2D();
+		} catch (NoninvertibleTransformException e) {
+			return null;
+		}
+		if(size != null) {	// Nothing outside the world is drawn either
+			Rectangle2D.intersect(out, new Rectangle2D.Double(-size.width/2, -size.height/2, size.width, size.height), out);
+		}
+		return out;
+	}
+	
+	/**
+	 * Returns whether everything the specified {@linkplain Entity} draws lies outside {@code view}
+	 */
+	private boolean isOffScreen(Entity e, Rectangle2D view) {
+		Rectangle2D local = e.getDrawBounds();
+		if(local == null) {
+			return false;
+		} else if(local.isEmpty()) {
+			return true;
+		}
+		AffineTransform t = e.getGeometry().transform;
+		double cx = local.getCenterX(), cy = local.getCenterY();
+		double hw = local.getWidth() / 2, hh = local.getHeight() / 2;
+		if(!e.fill && e.shape != null && e.sprite == null) {
+			hw += e.lineWidth;
+			hh += e.lineWidth;
+		}
+		double x, y, ex, ey;
+		if(interpolate && e.rotation != e.lastRotation) {	// Could be drawn at any angle in between, so use a circle
+			x = e.x;
+			y = e.y;
+			ex = ey = Math.hypot(Math.abs(cx) + hw, Math.abs(cy) + hh);
+		} else {
+			x = t.getScaleX() * cx + t.getShearX() * cy + t.getTranslateX();
+			y = t.getShearY() * cx + t.getScaleY() * cy + t.getTranslateY();
+			ex = Math.abs(t.getScaleX()) * hw + Math.abs(t.getShearX()) * hh;
+			ey = Math.abs(t.getShearY()) * hw + Math.abs(t.getScaleY()) * hh;
+		}
+		if(interpolate) {	// Could be drawn anywhere between its last position and its current one
+			ex += Math.abs(e.x - e.lastX);
+			ey += Math.abs(e.y - e.lastY);
+		}
+		return x + ex < view.getMinX() || x - ex > view.getMaxX() || y + ey < view.getMinY() || y - ey > view.getMaxY();
+	}
+	
+	/**
+	 * Sets whether {@linkplain Entity Entities} which are entirely outside the visible part of the {@linkplain World}
+	 * are skipped when drawing. If unspecified, this is enabled.
+	 * @param culling Whether to skip drawing off screen Entities
+	 * @see Entity#getDrawBounds()
+	 */
+	public void setCulling(boolean culling) {
+		this.culling = culling;
+	}
+	
+	/**
+	 * Returns the number of {@linkplain Entity Entities} drawn in the most recent frame
+	 * @return How many Entities were drawn
+	 * @see World#getCulledCount()
+	 */
+	public int getDrawnCount() {
+		return drawnCount;
+	}
+	
+	/**
+	 * Returns the number of {@linkplain Entity Entities} skipped in the most recent frame for being off screen
+	 * @return How many Entities were not drawn
+	 * @see World#setCulling(boolean)
+	 */
+	public int getCulledCount() {
+		return culledCount;
+	}
+	
+	/**
+	 * Returns how far the current time is between the latest update and the next one, from 0 to 1
+	 */
+	private double computeRenderAlpha() {
+		if(!interpolate) {
+			return 1;
+		}
+		long step = tickNanos;
+		if(step <= 0) {
+			return 1;
+		}
+		double alpha = (System.nanoTime() - lastTickNanos) / (double)step;
+		return Math.max(0, Math.min(1, alpha));
+	}
+	
 	private AffineTransform getWorldTransform() {
+		double width, height;
+		Dimension preferred;
+		if(view != null) {
+			width = view.getWidth();
+			height = view.getHeight();
+			preferred = view.getPreferredSize();
+		} else {	// Headless worlds act as though their window is exactly the size requested
+			preferred = (frameSize != null) ? frameSize : (size != null) ? size : new Dimension();
+			width = preferred.getWidth();
+			height = preferred.getHeight();
+		}
+		
 		AffineTransform transform = new AffineTransform();
-		transform.translate(panel.getWidth()/2.0,panel.getHeight()/2.0);
+		transform.translate(width/2.0,height/2.0);
 		transform.concatenate(camera.getTransform());
 		
 		double sx, sy;
 		
 		if(size != null) {
-			sx = panel.getWidth()/size.getWidth();
-			sy = panel.getHeight()/size.getHeight();
+			sx = width/size.getWidth();
+			sy = height/size.getHeight();
+		} else if(preferred.width > 0 && preferred.height > 0) {
+			sx = width/preferred.getWidth();
+			sy = height/preferred.getHeight();
 		} else {
-			sx = panel.getWidth()/panel.getPreferredSize().getWidth();
-			sy = panel.getHeight()/panel.getPreferredSize().getHeight();
+			sx = 1;
+			sy = 1;
 		}
-
+		
 		switch (zoomType) {
 			case FILL		-> transform.scale(Math.max(sx, sy), Math.max(sx, sy));
 			case LETTERBOX	-> transform.scale(Math.min(sx, sy), Math.min(sx, sy));
@@ -492,14 +1595,15 @@ public class World {
 	public void setSize(Dimension size) {
 		if(size != null) {
 			bounds = new ArrayList<>(4);
-			bounds.add(new Edge(Direction.NORTH, size));
-			bounds.add(new Edge(Direction.SOUTH, size));
-			bounds.add(new Edge(Direction.EAST,  size));
-			bounds.add(new Edge(Direction.WEST,  size));
+			for(Direction direction : Direction.cardinals()) {
+				bounds.add(new Edge(direction, size));
+			}
 		}
 		this.size = size;
-		frame.pack();
-		frame.setLocationRelativeTo(null);
+		if(frame != null) {
+			frame.pack();
+			frame.setLocationRelativeTo(null);
+		}
 	}
 	
 	/**
@@ -517,5 +1621,5 @@ public class World {
 	public void setZoomType(ZoomType zoom) {
 		this.zoomType = zoom;
 	}
-
+	
 }
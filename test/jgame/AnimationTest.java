@@ -0,0 +1,76 @@
+package jgame;
+
+import java.awt.image.BufferedImage;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that each {@linkplain World} plays {@linkplain Animation Animations} against its own clock, so moving one
+ * world forward does not move the Animations of another
+ */
+public class AnimationTest {
+	
+	private static final long FRAME_NANOS = 100_000_000L;
+	
+	private static class Plain extends Entity {
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {}
+	}
+	
+	public static void main(String[] args) {
+		separateWorlds();
+		lateStart();
+		passed("AnimationTest");
+	}
+	
+	private static void separateWorlds() {
+		Animation animation = animation();
+		World first = new World(true), second = new World(true);
+		Entity a = entity(first, animation.play()), b = entity(second, animation.play());
+		first.advanceAnimationClock(2*FRAME_NANOS + FRAME_NANOS/2);
+		checkFrame(a, animation, 2, "Animation in the world which moved");
+		checkFrame(b, animation, 0, "Animation in the world which did not move");
+		second.advanceAnimationClock(FRAME_NANOS);
+		checkFrame(a, animation, 2, "Animation in the world which did not move");
+		checkFrame(b, animation, 1, "Animation in the world which moved");
+		first.resetAnimationClock();
+		checkFrame(a, animation, 0, "Animation after its world's clock was reset");
+		checkFrame(b, animation, 1, "Animation in the other world after a reset");
+	}
+	
+	/**
+	 * A playback made before its Animation was used in a world starts once it is, rather than from the world's start
+	 */
+	private static void lateStart() {
+		Animation animation = animation();
+		World world = new World(true);
+		world.advanceAnimationClock(5*FRAME_NANOS);
+		Entity e = entity(world, animation.play());
+		checkFrame(e, animation, 0, "Playback first used late");
+		world.advanceAnimationClock(FRAME_NANOS);
+		checkFrame(e, animation, 1, "Playback one frame after it started");
+	}
+	
+	private static Animation animation() {
+		return new Animation(new Sprite(new BufferedImage(40, 10, BufferedImage.TYPE_INT_ARGB), 1, 4), 10);
+	}
+	
+	private static Entity entity(World world, Sprite sprite) {
+		Entity e = new Plain();
+		e.sprite = sprite;
+		world.add(e, 0, 0);
+		world.update();
+		return e;
+	}
+	
+	/**
+	 * Checks the Entity's Animation is on the specified frame, once it has been checked for collisions in its world
+	 */
+	private static void checkFrame(Entity e, Animation animation, int frame, String message) {
+		e.getGeometry();
+		checkEqual(animation.getFrame(frame), ((Animation)e.sprite).currentFrame(), message);
+	}
+}
@@ -0,0 +1,85 @@
+package jgame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Times drawing many small {@linkplain Sprite Sprites} from separate images, then again once they are packed into a
+ * {@linkplain TextureAtlas}, and checks both draw the same pixels
+ * <br><br>
+ * Without an accelerated pipeline this only measures the locality of drawing from one page, so most of the benefit
+ * of an atlas, keeping a single cached texture on the graphics card, does not show here.
+ */
+public class AtlasBenchmark {
+	
+	private static final int SPRITES = 64, DRAWS = 10_000, WARMUP_FRAMES = 10, FRAMES = 25, ROUNDS = 4;
+	
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		Sprite[] separate = new Sprite[SPRITES], packed = new Sprite[SPRITES];
+		TextureAtlas atlas = new TextureAtlas(1024);
+		for(int i = 0; i < SPRITES; i++) {
+			int width = 16 + random.nextInt(48), height = 16 + random.nextInt(48);
+			BufferedImage image = Images.createCompatibleImage(width, height);
+			Graphics2D g = image.createGraphics();
+			g.setColor(new Color(random.nextInt()));
+			g.fillOval(0, 0, width, height);
+			g.dispose();
+			separate[i] = new Sprite(image);
+			packed[i] = new Sprite(image);
+			atlas.add(packed[i]);
+		}
+		int pages = atlas.pack().size();
+		int[] order = new int[DRAWS], xs = new int[DRAWS], ys = new int[DRAWS];
+		for(int i = 0; i < DRAWS; i++) {
+			order[i] = random.nextInt(SPRITES);
+			xs[i] = random.nextInt(1200);
+			ys[i] = random.nextInt(680);
+		}
+		BufferedImage separateTarget = Images.createCompatibleImage(1280, 720);
+		BufferedImage packedTarget = Images.createCompatibleImage(1280, 720);
+		double separateMillis = Double.MAX_VALUE, packedMillis = Double.MAX_VALUE;
+		for(int round = 0; round < ROUNDS; round++) {	// Alternate, so neither gains from running after the other
+			separateMillis = Math.min(separateMillis, bestFrame(separate, order, xs, ys, separateTarget));
+			packedMillis = Math.min(packedMillis, bestFrame(packed, order, xs, ys, packedTarget));
+		}
+		
+		System.out.printf("%d draws of %d sprites, best of %d frames%n", DRAWS, SPRITES, ROUNDS * FRAMES);
+		System.out.printf("separate images: %.2f ms%n", separateMillis);
+		System.out.printf("atlas of %d page%s: %.2f ms%n", pages, (pages == 1) ? "" : "s", packedMillis);
+		System.out.println("identical output: " + samePixels(separateTarget, packedTarget));
+	}
+	
+	/**
+	 * Draws every Sprite in {@code order} to the target for each frame, returning the fastest frame in milliseconds
+	 */
+	private static double bestFrame(Sprite[] sprites, int[] order, int[] xs, int[] ys, BufferedImage target) {
+		Graphics2D g = target.createGraphics();
+		long best = Long.MAX_VALUE;
+		for(int frame = 0; frame < WARMUP_FRAMES + FRAMES; frame++) {
+			long start = System.nanoTime();
+			for(int i = 0; i < order.length; i++) {
+				sprites[order[i]].draw(g, xs[i], ys[i]);
+			}
+			long elapsed = System.nanoTime() - start;
+			if(frame >= WARMUP_FRAMES) {
+				best = Math.min(best, elapsed);
+			}
+		}
+		g.dispose();
+		return best / 1e6;
+	}
+	
+	private static boolean samePixels(BufferedImage a, BufferedImage b) {
+		for(int y = 0; y < a.getHeight(); y++) {
+			for(int x = 0; x < a.getWidth(); x++) {
+				if(a.getRGB(x, y) != b.getRGB(x, y)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
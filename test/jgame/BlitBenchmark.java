@@ -0,0 +1,67 @@
+package jgame;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+
+/**
+ * Measures how fast images are drawn as ImageIO decodes them, against the compatible copies made by
+ * {@linkplain Images#toCompatibleImage(BufferedImage)}, which is what {@linkplain Images#getImage(String)} returns
+ * <br><br>
+ * Each image is drawn into an 800x600 buffer, once as decoded and once as an opaque {@code TYPE_3BYTE_BGR} copy,
+ * since opaque images convert to a different format than translucent ones.
+ */
+public class BlitBenchmark {
+	
+	private static final int WARMUP_DRAWS = 500, DRAWS = 4000;
+	private static final String[] IMAGES = {"pong_digits.png", "pong_win_left.png"};
+	
+	public static void main(String[] args) throws IOException {
+		BufferedImage target = new BufferedImage(800, 600, BufferedImage.TYPE_INT_ARGB_PRE);
+		System.out.println("image                          decoded          compatible");
+		for(String name : IMAGES) {
+			BufferedImage decoded;
+			try(InputStream input = ClassLoader.getSystemResourceAsStream(name)) {
+				decoded = ImageIO.read(input);
+			}
+			BufferedImage opaque = new BufferedImage(decoded.getWidth(), decoded.getHeight(),
+					BufferedImage.TYPE_3BYTE_BGR);
+			Graphics2D g = opaque.createGraphics();
+			g.drawImage(decoded, 0, 0, null);
+			g.dispose();
+			compare(target, name, decoded);
+			compare(target, name + " (opaque)", opaque);
+		}
+	}
+	
+	private static void compare(BufferedImage target, String name, BufferedImage image) {
+		BufferedImage compatible = Images.toCompatibleImage(image);
+		System.out.printf("%-28s %s  %s%n", name, describe(target, image), describe(target, compatible));
+	}
+	
+	/**
+	 * Returns the type of the image and how many pixels of it are drawn per second
+	 */
+	private static String describe(BufferedImage target, BufferedImage image) {
+		return String.format("type %2d %6.0f Mpx/s", image.getType(), drawRate(target, image));
+	}
+	
+	/**
+	 * Returns how many million pixels of the image are drawn per second
+	 */
+	private static double drawRate(BufferedImage target, BufferedImage image) {
+		Graphics2D g = target.createGraphics();
+		for(int i = 0; i < WARMUP_DRAWS; i++) {
+			g.drawImage(image, i % 100, i % 100, null);
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < DRAWS; i++) {
+			g.drawImage(image, i % 100, i % 100, null);
+		}
+		long elapsed = System.nanoTime() - start;
+		g.dispose();
+		return (double)image.getWidth() * image.getHeight() * DRAWS / (elapsed / 1e3);
+	}
+}
@@ -0,0 +1,115 @@
+package jgame;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times collision queries through the {@linkplain SpatialHash} against checking every candidate, which is how
+ * {@linkplain Entity#collisionWithType(Class)} worked before the world had a broadphase
+ * <br><br>
+ * Every Entity wanders and looks for a collision each update. Also reports the number of cells the spatial hash
+ * table holds after a long run, which should stay proportional to the number of Entities.
+ */
+public class BroadphaseBenchmark {
+	
+	private static final int WARMUP_TICKS = 100, TICKS = 200;
+	
+	private static class Walker extends Entity {
+		final Random random;
+		final boolean bruteForce;
+		double dx, dy;
+		int hits;
+		
+		Walker(long seed, boolean bruteForce) {
+			this.random = new Random(seed);
+			this.bruteForce = bruteForce;
+		}
+		
+		@Override
+		public void setup() {
+			shape = new Rectangle(-8, -8, 16, 16);
+			dx = random.nextDouble() * 4 - 2;
+			dy = random.nextDouble() * 4 - 2;
+		}
+		
+		@Override
+		public void update() {
+			x += dx;
+			y += dy;
+			if(random.nextInt(50) == 0) {
+				dx = random.nextDouble() * 4 - 2;
+				dy = random.nextDouble() * 4 - 2;
+			}
+			if(bruteForce) {
+				List<Walker> all = world.getAllOfType(Walker.class);
+				for(int i = 0; i < all.size(); i++) {
+					Walker other = all.get(i);
+					if(other != this && this.collidesWith(other)) {
+						hits++;
+						break;
+					}
+				}
+			} else if(this.collisionWithType(Walker.class) != null) {
+				hits++;
+			}
+		}
+	}
+	
+	public static void main(String[] args) {
+		System.out.println("entities   brute force   spatial hash");
+		for(int count : new int[] {250, 500, 1000, 2000, 4000}) {
+			double brute = run(count, true);
+			double hashed = run(count, false);
+			System.out.printf("%8d  %9.3f ms  %10.3f ms%n", count, brute, hashed);
+		}
+		System.out.println();
+		System.out.println(churn(1000, 2000));
+	}
+	
+	/**
+	 * Returns the average time to update a world of {@code count} wandering Entities, in milliseconds
+	 */
+	private static double run(int count, boolean bruteForce) {
+		World world = new World(true);
+		// Keep the density the same as the number of Entities grows
+		double side = Math.sqrt(count) * 40;
+		Random random = new Random(count);
+		for(int i = 0; i < count; i++) {
+			world.add(new Walker(random.nextLong(), bruteForce), random.nextDouble() * side, random.nextDouble() * side);
+		}
+		for(int i = 0; i < WARMUP_TICKS; i++) {
+			world.update();
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < TICKS; i++) {
+			world.update();
+		}
+		return (System.nanoTime() - start) / 1e6 / TICKS;
+	}
+	
+	/**
+	 * Moves {@code count} Entities steadily in one direction for {@code ticks} updates, so they keep leaving cells
+	 * behind, and describes how large the spatial hash table grew
+	 */
+	private static String churn(int count, int ticks) {
+		World world = new World(true);
+		Random random = new Random(1);
+		for(int i = 0; i < count; i++) {
+			Walker walker = new Walker(random.nextLong(), false) {
+				@Override
+				public void update() {
+					x += 8;
+				}
+			};
+			world.add(walker, random.nextDouble() * 1000, random.nextDouble() * 1000);
+		}
+		for(int i = 0; i < ticks; i++) {
+			world.update();
+			world.findCollision(world.getAllOfType(Walker.class).get(0), Walker.class, null);
+		}
+		SpatialHash hash = world.getSpatialHash();
+		return count + " entities moved " + ticks + " times: " + hash.occupiedCells() + " cells in use, table of "
+				+ hash.capacity();
+	}
+}
@@ -0,0 +1,35 @@
+package jgame;
+
+/**
+ * The assertions shared by the checks in this directory, which are plain programs rather than tests for a
+ * particular framework, so they run with nothing but the JDK. Each check's {@code main} throws on the first failure.
+ */
+final class Check {
+	
+	private Check() {}
+	
+	/**
+	 * Throws an {@linkplain AssertionError} with the specified message unless {@code condition} holds
+	 */
+	static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+	
+	/**
+	 * Throws an {@linkplain AssertionError} unless the two values are equal
+	 */
+	static void checkEqual(Object expected, Object actual, String message) {
+		if(expected == null ? actual != null : !expected.equals(actual)) {
+			throw new AssertionError(message + ": expected " + expected + ", got " + actual);
+		}
+	}
+	
+	/**
+	 * Prints that the named check passed
+	 */
+	static void passed(String name) {
+		System.out.println(name + ": passed");
+	}
+}
@@ -0,0 +1,70 @@
+package jgame;
+
+import java.awt.Component;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+
+/**
+ * Times {@linkplain Controller#refresh()} when no input has arrived, which is what most updates see, and when a
+ * key is pressed or released before every refresh, then times checking a control by name against checking its
+ * {@linkplain Controller.Control Control}
+ */
+public class ControllerBenchmark {
+	
+	private static final int WARMUP = 2_000_000, RUNS = 20_000_000;
+	private static final KeyListener KEYBOARD = Controller.listener;
+	
+	public static void main(String[] args) {
+		KeyEvent press = key(KeyEvent.KEY_PRESSED), release = key(KeyEvent.KEY_RELEASED);
+		for(int pass = 0; pass < 2; pass++) {
+			boolean warmup = pass == 0;
+			int runs = warmup ? WARMUP : RUNS;
+			long start = System.nanoTime();
+			for(int i = 0; i < runs; i++) {
+				Controller.refresh();
+			}
+			long idle = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i = 0; i < runs; i++) {
+				if((i & 1) == 0) {
+					KEYBOARD.keyPressed(press);
+				} else {
+					KEYBOARD.keyReleased(release);
+				}
+				Controller.refresh();
+			}
+			long typing = System.nanoTime() - start;
+			int held = 0;
+			start = System.nanoTime();
+			for(int i = 0; i < runs; i++) {
+				held += Controller.controlDown("up") ? 1 : 0;
+			}
+			long lowerName = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i = 0; i < runs; i++) {
+				held += Controller.controlDown("UP") ? 1 : 0;
+			}
+			long upperName = System.nanoTime() - start;
+			Controller.Control up = Controller.control("UP");
+			start = System.nanoTime();
+			for(int i = 0; i < runs; i++) {
+				held += up.isDown() ? 1 : 0;
+			}
+			long handle = System.nanoTime() - start;
+			if(!warmup) {
+				System.out.printf("idle refresh: %.1f ns%n", (double)idle / runs);
+				System.out.printf("refresh after a key event: %.1f ns%n", (double)typing / runs);
+				System.out.printf("controlDown(\"up\"): %.1f ns%n", (double)lowerName / runs);
+				System.out.printf("controlDown(\"UP\"): %.1f ns%n", (double)upperName / runs);
+				System.out.printf("Control.isDown(): %.2f ns (held %d times)%n", (double)handle / runs, held);
+			}
+		}
+	}
+	
+	private static KeyEvent key(int id) {
+		Component source = new Component() {
+			private static final long serialVersionUID = 1L;
+		};
+		return new KeyEvent(source, id, 0, 0, KeyEvent.VK_UP, KeyEvent.CHAR_UNDEFINED);
+	}
+}
@@ -0,0 +1,188 @@
+package jgame;
+
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+
+import static jgame.Check.*;
+
+/**
+ * Checks how input reaching the {@linkplain Controller} from the window shows up after each refresh: keys and
+ * buttons held and newly pressed, the mouse's position and movement, named controls following the keys bound to
+ * them, and that a release is never lost when more input arrives than the game takes in
+ */
+public class ControllerTest {
+	
+	private static final Component SOURCE = new Component() {
+		private static final long serialVersionUID = 1L;
+	};
+	private static final KeyListener KEYBOARD = Controller.listener;
+	private static final MouseListener BUTTONS = Controller.listener;
+	private static final MouseMotionListener MOTION = Controller.listener;
+	
+	public static void main(String[] args) {
+		keys();
+		buttons();
+		mouse();
+		overflow();
+		controls();
+		passed("ControllerTest");
+	}
+	
+	private static void keys() {
+		int a = KeyEvent.VK_A;
+		Controller.refresh();
+		check(!Controller.keyDown(a) && !Controller.keyPressed(a), "A key never pressed");
+		
+		press(a);
+		check(!Controller.keyDown(a), "A key pressed since the last refresh should not show until the next");
+		Controller.refresh();
+		check(Controller.keyDown(a) && Controller.keyPressed(a), "A key pressed since the last refresh");
+		
+		press(a);	// Repeated by the keyboard while held
+		Controller.refresh();
+		check(Controller.keyDown(a) && !Controller.keyPressed(a), "A key still held");
+		
+		release(a);
+		Controller.refresh();
+		check(!Controller.keyDown(a) && !Controller.keyPressed(a), "A released key");
+		
+		press(a);
+		release(a);
+		Controller.refresh();
+		check(!Controller.keyDown(a) && Controller.keyPressed(a), "A key tapped between refreshes should be pressed");
+		Controller.refresh();
+		check(!Controller.keyPressed(a), "A tap should only be pressed for one refresh");
+		check(!Controller.keyDown(-1) && !Controller.keyPressed(-1), "A negative key code");
+	}
+	
+	private static void buttons() {
+		int left = MouseEvent.BUTTON1, right = MouseEvent.BUTTON3;
+		BUTTONS.mousePressed(mouse(MouseEvent.MOUSE_PRESSED, 0, 0, left));
+		Controller.refresh();
+		check(Controller.mouseButtonDown(left) && Controller.mouseButtonPressed(left), "A pressed button");
+		check(!Controller.mouseButtonDown(right), "A button never pressed");
+		Controller.refresh();
+		check(Controller.mouseButtonDown(left) && !Controller.mouseButtonPressed(left), "A held button");
+		BUTTONS.mouseReleased(mouse(MouseEvent.MOUSE_RELEASED, 0, 0, left));
+		Controller.refresh();
+		check(!Controller.mouseButtonDown(left) && !Controller.mouseButtonPressed(left), "A released button");
+		check(!Controller.mouseButtonDown(64) && !Controller.mouseButtonPressed(-1), "Buttons out of range");
+	}
+	
+	private static void mouse() {
+		move(10, 20);
+		Controller.refresh();
+		Point start = Controller.getMouse();
+		move(15, 12);
+		move(40, 5);	// Only where the mouse ends up counts
+		Controller.refresh();
+		checkEqual(new Point(40, 5), Controller.getMouse(), "Mouse position");
+		checkEqual(new Point(40 - start.x, 5 - start.y), Controller.getMouseMovement(), "Mouse movement");
+		Controller.refresh();
+		checkEqual(new Point(40, 5), Controller.getMouse(), "Mouse position while still");
+		checkEqual(new Point(), Controller.getMouseMovement(), "Mouse movement while still");
+		move(-30, 5);
+		Controller.refresh();
+		checkEqual(new Point(-70, 0), Controller.getMouseMovement(), "Mouse movement outside the window");
+	}
+	
+	/**
+	 * More input than the queue holds arrives while the game is not refreshing, so the releases at the end are
+	 * dropped, which must not leave their keys or buttons held
+	 */
+	private static void overflow() {
+		int a = KeyEvent.VK_A, b = KeyEvent.VK_B;
+		press(a);
+		BUTTONS.mousePressed(mouse(MouseEvent.MOUSE_PRESSED, 0, 0, MouseEvent.BUTTON1));
+		Controller.refresh();
+		check(Controller.keyDown(a) && Controller.mouseButtonDown(MouseEvent.BUTTON1), "Held before the overflow");
+		for(int i = 0; i < 5000; i++) {
+			press(b);
+		}
+		release(a);
+		release(b);
+		BUTTONS.mouseReleased(mouse(MouseEvent.MOUSE_RELEASED, 0, 0, MouseEvent.BUTTON1));
+		Controller.refresh();
+		check(Controller.keyPressed(b), "A key pressed before the overflow should still be pressed");
+		check(!Controller.keyDown(a), "A key released after the overflow should not stay held");
+		check(!Controller.keyDown(b), "A key pressed and released after the overflow should not stay held");
+		check(!Controller.mouseButtonDown(MouseEvent.BUTTON1), "A button released after the overflow should not "
+				+ "stay held");
+		
+		press(a);
+		Controller.refresh();
+		check(Controller.keyDown(a) && Controller.keyPressed(a), "A key pressed after recovering from an overflow");
+		release(a);
+		Controller.refresh();
+		check(!Controller.keyDown(a), "A key released after recovering from an overflow");
+	}
+	
+	private static void controls() {
+		Controller.Control jump = Controller.control("jump");
+		check(jump == Controller.control("JUMP") && jump == Controller.control("Jump"), "Every spelling of a name "
+				+ "should give the same control");
+		checkEqual("JUMP", jump.getName(), "Name of a control");
+		check(jump != Controller.control("duck"), "Different names should give different controls");
+		int names = Controller.getControlNameCount();
+		for(int i = 0; i < 1000; i++) {
+			Controller.control(new StringBuilder("jump").reverse().reverse().toString());	// A new string each time
+			Controller.control(((i & 1) == 0) ? "jUmP" : "JuMp");
+		}
+		checkEqual(names, Controller.getControlNameCount(), "Names kept after looking up more spellings");
+		
+		int j = KeyEvent.VK_J, k = KeyEvent.VK_K;
+		check(Controller.addKeyBind("Jump", j) == jump, "Binding a key should return the named control");
+		Controller.addKeyBind("JUMP", k);
+		Controller.refresh();
+		check(!jump.isDown() && !jump.isPressed(), "A control with no key pressed");
+		press(j);
+		Controller.refresh();
+		check(jump.isDown() && jump.isPressed(), "A control whose key was pressed");
+		check(Controller.controlDown("jump") && Controller.controlPressed("JUMP"), "A pressed control, by name");
+		check(!Controller.control("duck").isDown(), "A control with no keys bound");
+		press(k);
+		Controller.refresh();
+		check(jump.isDown() && jump.isPressed(), "A control pressed by its other key while held");
+		Controller.refresh();
+		check(jump.isDown() && !jump.isPressed(), "A control held by both keys");
+		release(j);
+		Controller.refresh();
+		check(jump.isDown(), "A control still held by its other key");
+		release(k);
+		Controller.refresh();
+		check(!jump.isDown() && !jump.isPressed(), "A control with both keys released");
+		
+		Controller.removeKeyBind("jump", j);
+		press(j);
+		Controller.refresh();
+		check(!jump.isDown() && !jump.isPressed(), "A control after its key was unbound");
+		Controller.addKeyBind("jump", j);
+		Controller.refresh();
+		check(jump.isDown(), "A control bound to a key already held");
+		release(j);
+		Controller.refresh();
+		Controller.removeKeyBind("jump", j);
+		Controller.removeKeyBind("jump", k);
+	}
+	
+	private static void press(int key) {
+		KEYBOARD.keyPressed(new KeyEvent(SOURCE, KeyEvent.KEY_PRESSED, 0, 0, key, KeyEvent.CHAR_UNDEFINED));
+	}
+	
+	private static void release(int key) {
+		KEYBOARD.keyReleased(new KeyEvent(SOURCE, KeyEvent.KEY_RELEASED, 0, 0, key, KeyEvent.CHAR_UNDEFINED));
+	}
+	
+	private static void move(int x, int y) {
+		MOTION.mouseMoved(mouse(MouseEvent.MOUSE_MOVED, x, y, MouseEvent.NOBUTTON));
+	}
+	
+	private static MouseEvent mouse(int id, int x, int y, int button) {
+		return new MouseEvent(SOURCE, id, 0, 0, x, y, 0, false, button);
+	}
+}
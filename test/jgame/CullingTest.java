@@ -0,0 +1,140 @@
+package jgame;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that drawing skips exactly the {@linkplain Entity Entities} which are entirely out of view, counting them
+ * in {@linkplain World#getCulledCount()}, and never skips Entities which draw themselves
+ */
+public class CullingTest {
+	
+	private static final int SIZE = 100;
+	private static final Sprite SPRITE = new Sprite(new BufferedImage(20, 8, BufferedImage.TYPE_INT_ARGB));
+	
+	private static class Box extends Entity {
+		Box(int half) {
+			this.shape = new Rectangle(-half, -half, 2 * half, 2 * half);
+		}
+		
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {}
+	}
+	
+	/**
+	 * Draws itself, so the world cannot know where it draws
+	 */
+	private static class Custom extends Box {
+		Custom() {
+			super(5);
+		}
+		
+		@Override
+		public void paint(Graphics g) {
+			g.fillRect(-5, -5, 10, 10);
+		}
+	}
+	
+	/** An Entity placed somewhere around the view, and whether any of it can be seen */
+	private static class Case {
+		final String name;
+		final Entity entity;
+		final double x, y;
+		final boolean visible;
+		
+		Case(String name, Entity entity, double x, double y, boolean visible) {
+			this.name = name;
+			this.entity = entity;
+			this.x = x;
+			this.y = y;
+			this.visible = visible;
+		}
+	}
+	
+	public static void main(String[] args) {
+		List<Case> cases = cases();
+		for(Case c : cases) {	// Each on its own, to know which ones are culled
+			World world = world();
+			world.add(c.entity, c.x, c.y);
+			world.update();
+			render(world);
+			checkEqual(c.visible ? 1 : 0, world.getDrawnCount(), "Draws of " + c.name);
+			checkEqual(c.visible ? 0 : 1, world.getCulledCount(), "Culls of " + c.name);
+			world.remove(c.entity);
+			world.update();
+		}
+		
+		World world = world();
+		int visible = 0;
+		for(Case c : cases) {
+			world.add(c.entity, c.x, c.y);
+			visible += c.visible ? 1 : 0;
+		}
+		world.update();
+		render(world);
+		checkEqual(visible, world.getDrawnCount(), "Entities drawn");
+		checkEqual(cases.size() - visible, world.getCulledCount(), "Entities culled");
+		
+		world.camera.moveTo(0, 40);	// Now covers -10 to 90 down, but the world ends at 50
+		render(world);
+		checkEqual(visible - 1, world.getDrawnCount(), "Entities drawn after the box across the top edge left view");
+		checkEqual(cases.size() - visible + 1, world.getCulledCount(), "Entities culled after the camera moved");
+		
+		world.setCulling(false);
+		render(world);
+		checkEqual(cases.size(), world.getDrawnCount(), "Entities drawn without culling");
+		checkEqual(0, world.getCulledCount(), "Entities culled without culling");
+		passed("CullingTest");
+	}
+	
+	/**
+	 * Returns Entities in and out of a view which covers -50 to 50 each way
+	 */
+	private static List<Case> cases() {
+		List<Case> cases = new ArrayList<>();
+		cases.add(new Case("a box in the middle", new Box(5), 0, 0, true));
+		cases.add(new Case("a box across the right edge", new Box(5), 54, 0, true));
+		cases.add(new Case("a box across the top edge", new Box(5), -30, -54, true));
+		cases.add(new Case("a box just past the right edge", new Box(5), 56, 0, false));
+		cases.add(new Case("a box below", new Box(5), 0, 80, false));
+		cases.add(new Case("a box far away", new Box(5), -200, -200, false));
+		Box turned = new Box(5);
+		turned.rotation = 45;
+		cases.add(new Case("a turned box whose corner reaches in", turned, 57, 0, true));
+		Box outline = new Box(5);
+		outline.fill = false;
+		outline.lineWidth = 3;
+		cases.add(new Case("an outline whose line reaches in", outline, 57, 20, true));
+		Box sprite = new Box(0);
+		sprite.sprite = SPRITE;
+		cases.add(new Case("a sprite half as wide as its distance past the edge", sprite, -59, 0, true));
+		Box farSprite = new Box(0);
+		farSprite.sprite = SPRITE;
+		cases.add(new Case("a sprite less than half as high as its distance past the edge", farSprite, 0, -55, false));
+		cases.add(new Case("an Entity which draws itself", new Custom(), 500, 500, true));
+		return cases;
+	}
+	
+	private static World world() {
+		World world = new World(true);
+		world.setSize(new Dimension(SIZE, SIZE));
+		return world;
+	}
+	
+	private static void render(World world) {
+		BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		world.render(g, SIZE, SIZE);
+		g.dispose();
+	}
+}
@@ -0,0 +1,56 @@
+package jgame;
+
+import java.awt.Dimension;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.RoundRectangle2D;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that {@linkplain World.Edge Edges} agree with an exact {@linkplain Area} test about which rotated, curved
+ * shapes are touching them
+ */
+public class EdgeTest {
+	
+	private static class Ball extends Entity {
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {}
+	}
+	
+	public static void main(String[] args) {
+		World world = new World(true);
+		world.setSize(new Dimension(400, 300));
+		Ball ball = new Ball();
+		world.add(ball);
+		world.update();
+		int checked = 0;
+		for(int s = 0; s < 3; s++) {
+			ball.shape = switch (s) {
+				case 0	-> new Ellipse2D.Double(-20, -20, 40, 40);
+				case 1	-> new Ellipse2D.Double(-30, -10, 60, 20);
+				default	-> new RoundRectangle2D.Double(-25, -15, 50, 30, 20, 20);
+			};
+			for(int angle = 0; angle < 360; angle += 15) {
+				ball.rotation = angle;
+				// Walk across the east edge, which is at x = 200
+				for(int i = 0; i < 120; i++) {
+					ball.x = 150 + i * 0.83;
+					ball.y = 0;
+					for(World.Edge edge : world.getAllOfType(World.Edge.class)) {
+						Area overlap = new Area(edge.getCollisionArea());
+						overlap.intersect(ball.getCollisionArea());
+						checkEqual(!overlap.isEmpty(), ball.collidesWith(edge), "Shape " + s + " at " + angle
+								+ " degrees and x = " + ball.x + " touching the " + edge.direction + " edge");
+						checked++;
+					}
+				}
+			}
+		}
+		check(checked > 0, "Some positions should have been checked");
+		passed("EdgeTest");
+	}
+}
@@ -0,0 +1,70 @@
+package jgame;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that {@linkplain EntityPool EntityPools} only take back Entities which have really left the world
+ */
+public class EntityPoolTest {
+	
+	private static class Bullet extends Entity {
+		int resets;
+		
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {}
+		
+		@Override
+		protected void reset() {
+			resets++;
+		}
+	}
+	
+	public static void main(String[] args) {
+		removeThenAdd();
+		removeAndRecycle();
+		passed("EntityPoolTest");
+	}
+	
+	/**
+	 * An Entity removed and added back in the same update stays in the world, and out of the pool
+	 */
+	private static void removeThenAdd() {
+		World world = new World(true);
+		EntityPool<Bullet> pool = new EntityPool<>(Bullet::new);
+		Bullet bullet = pool.acquire();
+		world.add(bullet);
+		world.update();
+		
+		world.remove(bullet);
+		world.add(bullet);
+		world.update();
+		check(world.getAllOfType(Bullet.class).contains(bullet), "Bullet should still be in the world");
+		check(bullet.world == world, "Bullet should still know its world");
+		checkEqual(0, pool.getAvailableCount(), "Bullet should not be in the pool");
+		checkEqual(0, bullet.resets, "Bullet should not have been reset");
+		check(pool.acquire() != bullet, "The pool should not hand out a live Bullet");
+	}
+	
+	/**
+	 * An Entity removed for good goes back to its pool once, and is handed out again
+	 */
+	private static void removeAndRecycle() {
+		World world = new World(true);
+		EntityPool<Bullet> pool = new EntityPool<>(Bullet::new);
+		Bullet bullet = pool.acquire();
+		world.add(bullet);
+		world.update();
+		
+		world.remove(bullet);
+		world.remove(bullet);
+		world.update();
+		check(!world.getAllOfType(Bullet.class).contains(bullet), "Bullet should have left the world");
+		check(bullet.world == null, "Bullet should not know its old world");
+		checkEqual(1, pool.getAvailableCount(), "Bullet should be in the pool once");
+		checkEqual(1, bullet.resets, "Bullet should have been reset once");
+		check(pool.acquire() == bullet, "The pool should hand out the recycled Bullet");
+	}
+}
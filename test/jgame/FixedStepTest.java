@@ -0,0 +1,108 @@
+package jgame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static jgame.Check.*;
+
+/**
+ * Checks which updates a {@linkplain Game.LoopMode#FIXED_STEP fixed step} loop runs when it is on time, early,
+ * behind, or too far behind to catch up, and that it carries on past a {@linkplain RuntimeException} thrown by an
+ * update but not past an {@linkplain Error}
+ */
+public class FixedStepTest {
+	
+	private static final long STEP = 10;
+	
+	/**
+	 * Records when each of its updates was scheduled, and throws whatever it is told to on the specified update
+	 */
+	private static class Scheduled extends Game {
+		final List<Long> updates = new ArrayList<>();
+		int throwOn = -1;
+		Throwable toThrow;
+		
+		Scheduled() {
+			super(true);
+		}
+		
+		@Override
+		protected void setup() {}
+		
+		@Override
+		protected void update() {
+			updates.add(world.scheduledTickNanos);
+			if(updates.size() - 1 == throwOn) {
+				if(toThrow instanceof Error) {
+					throw (Error) toThrow;
+				}
+				throw (RuntimeException) toThrow;
+			}
+		}
+	}
+	
+	public static void main(String[] args) {
+		due("On time", 0, 0, 10, 0L);
+		due("Early", 5, 10, 10);
+		due("Three updates behind", 25, 0, 30, 0L, 10L, 20L);
+		due("Far behind", 1000, 0, 1000, 0L, 10L, 20L, 30L, 40L);
+		checkEqual(5, Game.MAX_CATCH_UP, "The most updates run in a row");
+		long near = Long.MAX_VALUE - 5;
+		due("Across the overflow of nanoTime", near + 25, near, near + 30, near, near + 10, near + 20);
+		runtimeException();
+		error();
+		passed("FixedStepTest");
+	}
+	
+	/**
+	 * Checks the updates run at {@code now} by a loop whose next update is scheduled at {@code next}, and when it
+	 * schedules the update after them
+	 */
+	private static void due(String message, long now, long next, long after, Long... expected) {
+		Scheduled game = new Scheduled();
+		game.step(0);
+		checkEqual(after, game.runDueUpdates(now, next, STEP), message + ": next update");
+		checkEqual(Arrays.asList(expected), game.updates, message + ": updates run");
+	}
+	
+	/**
+	 * An update which throws a RuntimeException should be reported to the thread's handler, and the updates after
+	 * it should still run
+	 */
+	private static void runtimeException() {
+		Scheduled game = new Scheduled();
+		game.step(0);
+		game.throwOn = 1;
+		game.toThrow = new IllegalStateException("thrown by an update");
+		List<Throwable> reported = new ArrayList<>();
+		Thread thread = Thread.currentThread();
+		Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+		thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+		try {
+			checkEqual(30L, game.runDueUpdates(20, 0, STEP), "Next update after a RuntimeException");
+		} finally {
+			thread.setUncaughtExceptionHandler(handler);
+		}
+		checkEqual(Arrays.asList(0L, 10L, 20L), game.updates, "Updates run around a RuntimeException");
+		checkEqual(Arrays.asList(game.toThrow), reported, "Exceptions reported");
+	}
+	
+	/**
+	 * An update which throws an Error should end the loop, leaving the updates after it unrun
+	 */
+	private static void error() {
+		Scheduled game = new Scheduled();
+		game.step(0);
+		game.throwOn = 1;
+		game.toThrow = new AssertionError("thrown by an update");
+		try {
+			game.runDueUpdates(20, 0, STEP);
+		} catch(AssertionError e) {
+			check(e == game.toThrow, "The Error thrown by the update should end the loop");
+			checkEqual(Arrays.asList(0L, 10L), game.updates, "Updates run before an Error");
+			return;
+		}
+		throw new AssertionError("An Error thrown by an update should not be caught");
+	}
+}
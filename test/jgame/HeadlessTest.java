@@ -0,0 +1,94 @@
+package jgame;
+
+import java.awt.Component;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that a {@linkplain Game#Game(boolean) headless} game has no window and cannot be
+ * {@linkplain Game#start() started}, and that {@linkplain Game#step(int)} sets it up once and runs exactly as many
+ * updates of the controller, the game, and the world as it is asked to
+ */
+public class HeadlessTest {
+	
+	private static final Component SOURCE = new Component() {
+		private static final long serialVersionUID = 1L;
+	};
+	private static final KeyListener KEYBOARD = Controller.listener;
+	
+	/**
+	 * Counts its updates
+	 */
+	private static class Counter extends Entity {
+		int updates;
+		
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {
+			updates++;
+		}
+	}
+	
+	/**
+	 * Counts its setups and updates, and records whether space was newly pressed in each update
+	 */
+	private static class Counted extends Game {
+		final Counter counter = new Counter();
+		final List<Boolean> pressed = new ArrayList<>();
+		int setups;
+		
+		Counted() {
+			super(true);
+		}
+		
+		@Override
+		protected void setup() {
+			setups++;
+			world.add(counter, 0, 0);
+		}
+		
+		@Override
+		protected void update() {
+			pressed.add(Controller.keyPressed(KeyEvent.VK_SPACE));
+		}
+	}
+	
+	public static void main(String[] args) {
+		Counted game = new Counted();
+		check(game.world.isHeadless(), "A game created headless should have a headless world");
+		check(game.world.getFrame() == null, "A headless world should have no window");
+		try {
+			game.start();
+			throw new AssertionError("Starting a headless game should throw");
+		} catch(IllegalStateException expected) {}
+		checkEqual(0, game.setups, "Setups after a failed start");
+		
+		game.step(0);
+		checkEqual(1, game.setups, "Setups after stepping no updates");
+		checkEqual(0, game.pressed.size(), "Updates run by stepping no updates");
+		
+		KEYBOARD.keyPressed(new KeyEvent(SOURCE, KeyEvent.KEY_PRESSED, 0, 0, KeyEvent.VK_SPACE,
+				KeyEvent.CHAR_UNDEFINED));
+		game.setFramerate(50);
+		long clock = game.world.getAnimationClock();
+		game.step(3);
+		checkEqual(1, game.setups, "Setups after stepping again");
+		checkEqual(Arrays.asList(true, false, false), game.pressed, "Space newly pressed in each update, which "
+				+ "shows the controller was refreshed before every one");
+		checkEqual(3, game.counter.updates, "World updates run by stepping 3");
+		checkEqual(3 * 20_000_000L, game.world.getAnimationClock() - clock, "Animation clock moved by stepping 3");
+		
+		game.step(5);
+		checkEqual(8, game.pressed.size(), "Game updates run by stepping 3, then 5");
+		checkEqual(8, game.counter.updates, "World updates run by stepping 3, then 5");
+		checkEqual(1, game.setups, "Setups after stepping 3, then 5");
+		passed("HeadlessTest");
+	}
+}
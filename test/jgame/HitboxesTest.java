@@ -0,0 +1,74 @@
+package jgame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that traced {@linkplain Hitboxes} are real polygons, however few vertices they are allowed
+ */
+public class HitboxesTest {
+	
+	public static void main(String[] args) {
+		square();
+		circle();
+		tooFewVertices();
+		passed("HitboxesTest");
+	}
+	
+	private static void square() {
+		BufferedImage image = image(false);
+		for(int max = 3; max <= 8; max++) {
+			checkPolygon(Hitboxes.trace(image, Hitboxes.Mode.CONVEX_HULL, max), max, "Square hull");
+			checkPolygon(Hitboxes.trace(image, Hitboxes.Mode.OUTLINE, max), max, "Square outline");
+		}
+	}
+	
+	private static void circle() {
+		BufferedImage image = image(true);
+		for(int max = 3; max <= 8; max++) {
+			checkPolygon(Hitboxes.trace(image, Hitboxes.Mode.CONVEX_HULL, max), max, "Circle hull");
+			checkPolygon(Hitboxes.trace(image, Hitboxes.Mode.OUTLINE, max), max, "Circle outline");
+		}
+	}
+	
+	private static void tooFewVertices() {
+		try {
+			Hitboxes.trace(image(false), Hitboxes.Mode.CONVEX_HULL, 2);
+		} catch(IllegalArgumentException e) {
+			return;
+		}
+		throw new AssertionError("Tracing with 2 vertices should be rejected");
+	}
+	
+	/**
+	 * Returns a 20x20 image, solid either everywhere or in a circle, with a transparent border
+	 */
+	private static BufferedImage image(boolean circle) {
+		BufferedImage image = new BufferedImage(24, 24, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		if(circle) {
+			g.fillOval(2, 2, 20, 20);
+		} else {
+			g.fillRect(2, 2, 20, 20);
+		}
+		g.dispose();
+		return image;
+	}
+	
+	private static void checkPolygon(Polygon polygon, int maxVertices, String name) {
+		String description = name + " with at most " + maxVertices + " vertices";
+		check(polygon.npoints >= 3, description + " has " + polygon.npoints + " vertices");
+		check(polygon.npoints <= maxVertices, description + " has " + polygon.npoints + " vertices");
+		long twiceArea = 0;
+		for(int i = 0; i < polygon.npoints; i++) {
+			int j = (i + 1) % polygon.npoints;
+			twiceArea += (long)polygon.xpoints[i] * polygon.ypoints[j] - (long)polygon.xpoints[j] * polygon.ypoints[i];
+		}
+		check(twiceArea != 0, description + " has no area");
+	}
+}
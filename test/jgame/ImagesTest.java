@@ -0,0 +1,54 @@
+package jgame;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that an image which fails to load is not kept in the {@linkplain Images} cache, so it loads once the file
+ * is there
+ */
+public class ImagesTest {
+	
+	private static final String NAME = "images_test_late.png";
+	
+	public static void main(String[] args) throws IOException {
+		File file = new File(classpathDirectory(), NAME);
+		file.delete();
+		try {
+			missingThenAdded(file);
+		} finally {
+			file.delete();
+		}
+		passed("ImagesTest");
+	}
+	
+	private static void missingThenAdded(File file) throws IOException {
+		int cached = Images.getCacheStats().getImageCount();
+		check(Images.getImage(NAME) == null, "A missing image should load as null");
+		checkEqual(cached, Images.getCacheStats().getImageCount(), "Images cached after a failed load");
+		
+		ImageIO.write(new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB), "png", file);
+		BufferedImage image = Images.getImage(NAME);
+		check(image != null, "An image added after failing to load should load");
+		checkEqual(3, image.getWidth(), "Width of the image");
+		checkEqual(cached + 1, Images.getCacheStats().getImageCount(), "Images cached after a successful load");
+		check(Images.getImage(NAME) == image, "A loaded image should come from the cache");
+	}
+	
+	/**
+	 * Returns the first directory on the class path, where a file written is found the same way as images
+	 */
+	private static File classpathDirectory() {
+		for(String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			File directory = new File(entry);
+			if(directory.isDirectory()) {
+				return directory;
+			}
+		}
+		throw new IllegalStateException("No directory on the class path");
+	}
+}
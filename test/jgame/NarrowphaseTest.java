@@ -0,0 +1,110 @@
+package jgame;
+
+import java.awt.Polygon;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.util.Random;
+
+import static jgame.Check.*;
+
+/**
+ * Compares the analytic {@linkplain Narrowphase} against intersecting {@linkplain java.awt.geom.Area Areas} for
+ * random pairs of rectangles, circles, rounded rectangles and convex polygons at random positions and rotations
+ * <br><br>
+ * Area approximates curves, and both tests round differently, so pairs which only just touch may disagree. A
+ * disagreement is allowed only if moving one shape by a hundredth of a pixel changes the analytic answer to
+ * match, and such pairs must stay rare.
+ */
+public class NarrowphaseTest {
+	
+	private static final int PAIRS = 200000;
+	private static final double NUDGE = 0.01;
+	
+	public static void main(String[] args) {
+		Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+		int overlapping = 0, tested = 0, nearTangent = 0;
+		for(int i = 0; i < PAIRS; i++) {
+			Shape sa = shape(random), sb = shape(random);
+			double ax = random.nextDouble() * 80, ay = random.nextDouble() * 80, ar = rotation(random);
+			double bx = random.nextDouble() * 80, by = random.nextDouble() * 80, br = rotation(random);
+			CollisionGeometry a = geometry(sa, ax, ay, ar), b = geometry(sb, bx, by, br);
+			if(!a.bounds.intersects(b.bounds) || a.getConvex() == Narrowphase.NONE
+					|| b.getConvex() == Narrowphase.NONE) {
+				continue;
+			}
+			tested++;
+			boolean exact = Narrowphase.intersectsArea(a, b);
+			boolean analytic = Narrowphase.intersects(a.getConvex(), b.getConvex());
+			overlapping += exact ? 1 : 0;
+			if(analytic != exact) {
+				check(nudged(sa, ax, ay, ar, b, exact), "Analytic test says " + analytic + " but Area says " + exact
+						+ " for " + describe(sa, ax, ay, ar) + " and " + describe(sb, bx, by, br));
+				nearTangent++;
+			}
+		}
+		System.out.println(tested + " pairs with overlapping bounds, " + overlapping + " colliding, "
+				+ nearTangent + " near-tangent disagreements");
+		check(tested > PAIRS / 10, "Many pairs should have been close enough to test");
+		check(nearTangent <= tested / 1000, "Near-tangent disagreements should be rare");
+		passed("NarrowphaseTest");
+	}
+	
+	/**
+	 * Returns whether moving the first shape slightly in some direction makes the analytic test give {@code exact}
+	 */
+	private static boolean nudged(Shape shape, double x, double y, double rotation, CollisionGeometry other,
+			boolean exact) {
+		for(int dx = -1; dx <= 1; dx++) {
+			for(int dy = -1; dy <= 1; dy++) {
+				CollisionGeometry moved = geometry(shape, x + dx * NUDGE, y + dy * NUDGE, rotation);
+				if(Narrowphase.intersects(moved.getConvex(), other.getConvex()) == exact) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	private static Shape shape(Random random) {
+		double w = 4 + random.nextDouble() * 40, h = 4 + random.nextDouble() * 40;
+		switch(random.nextInt(4)) {
+		case 0:
+			return new Rectangle2D.Double(-w / 2, -h / 2, w, h);
+		case 1:
+			return new Ellipse2D.Double(-w / 2, -w / 2, w, w);
+		case 2:
+			double arc = random.nextDouble() * Math.min(w, h);
+			return new RoundRectangle2D.Double(-w / 2, -h / 2, w, h, arc, arc);
+		default:
+			// A regular polygon with 3 to 8 sides
+			int sides = 3 + random.nextInt(6);
+			Polygon polygon = new Polygon();
+			for(int i = 0; i < sides; i++) {
+				double angle = 2 * Math.PI * i / sides;
+				polygon.addPoint((int)Math.round(Math.cos(angle) * w / 2), (int)Math.round(Math.sin(angle) * w / 2));
+			}
+			return polygon;
+		}
+	}
+	
+	/**
+	 * Returns a random angle, a quarter of the time a multiple of 90 degrees, so axis-aligned pairs are tested too
+	 */
+	private static double rotation(Random random) {
+		return (random.nextInt(4) == 0) ? 90 * random.nextInt(4) : random.nextDouble() * 360 - 180;
+	}
+	
+	private static CollisionGeometry geometry(Shape shape, double x, double y, double rotation) {
+		AffineTransform transform = new AffineTransform();
+		transform.translate(x, y);
+		transform.rotate(Math.toRadians(rotation));
+		return new CollisionGeometry(x, y, rotation, Entity.RotationMode.ROTATE, shape, transform);
+	}
+	
+	private static String describe(Shape shape, double x, double y, double rotation) {
+		return shape + " at (" + x + ", " + y + ") turned " + rotation;
+	}
+}
@@ -0,0 +1,78 @@
+package jgame;
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+/**
+ * Times updates of {@linkplain ParallelUpdate} Entities at several {@linkplain World#setParallelism(int)
+ * parallelisms}, to show how the update scales with the number of threads
+ * <br><br>
+ * Each Entity wanders, steers with some trigonometry, and checks for a collision with others of its type, which
+ * reads their geometry while they are updating on other threads.
+ */
+public class ParallelBenchmark {
+	
+	private static final int COUNT = 20000, WARMUP_TICKS = 50, TICKS = 100;
+	
+	private static class Boid extends Entity implements ParallelUpdate {
+		final Random random;
+		double speed;
+		int hits;
+		
+		Boid(long seed) {
+			this.random = new Random(seed);
+		}
+		
+		@Override
+		public void setup() {
+			shape = new Rectangle(-4, -4, 8, 8);
+			speed = 1 + random.nextDouble();
+			rotation = random.nextDouble() * 360;
+		}
+		
+		@Override
+		public void update() {
+			double steer = 0;
+			for(int i = 1; i <= 20; i++) {
+				steer += Math.sin(x / (37.0 * i) + y / (53.0 * i)) / i;
+			}
+			rotation += steer + random.nextGaussian();
+			x += speed * Math.cos(this.getRadians());
+			y += speed * Math.sin(this.getRadians());
+			if(this.collisionWithType(Boid.class) != null) {
+				hits++;
+			}
+		}
+	}
+	
+	public static void main(String[] args) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println(COUNT + " entities, " + cores + " available processors");
+		for(int threads : new int[] {1, 2, 4, 8}) {
+			System.out.printf("%d threads: %.3f ms per update%n", threads, run(threads));
+		}
+	}
+	
+	/**
+	 * Returns the average time to update the world with the specified parallelism, in milliseconds
+	 */
+	private static double run(int threads) {
+		World world = new World(true);
+		world.setParallelism(threads);
+		Random random = new Random(1);
+		double side = Math.sqrt(COUNT) * 30;
+		for(int i = 0; i < COUNT; i++) {
+			world.add(new Boid(random.nextLong()), random.nextDouble() * side, random.nextDouble() * side);
+		}
+		for(int i = 0; i < WARMUP_TICKS; i++) {
+			world.update();
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < TICKS; i++) {
+			world.update();
+		}
+		double out = (System.nanoTime() - start) / 1e6 / TICKS;
+		world.setParallelism(1);
+		return out;
+	}
+}
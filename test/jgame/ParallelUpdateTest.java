@@ -0,0 +1,79 @@
+package jgame;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that {@linkplain ParallelUpdate} Entities checking collisions with each other never change each other's
+ * fields
+ */
+public class ParallelUpdateTest {
+	
+	private static final int COUNT = 2000, TICKS = 200;
+	
+	private static class Spinner extends Entity implements ParallelUpdate {
+		
+		@Override
+		public void setup() {
+			shape = new Rectangle(-10, -10, 20, 20);
+		}
+		
+		@Override
+		public void update() {
+			rotation += 7;
+			// Checking every neighbour rebuilds their geometry while they are turning on other threads
+			List<Spinner> others = world.getAllOfType(Spinner.class);
+			for(int i = -3; i <= 3; i++) {
+				Spinner other = others.get(Math.floorMod(slot + i, others.size()));
+				this.collidesWith(other);
+			}
+		}
+	}
+	
+	public static void main(String[] args) {
+		readOnly();
+		turning();
+		passed("ParallelUpdateTest");
+	}
+	
+	/**
+	 * Checking a collision with an Entity, or asking for its angle, leaves its rotation as it was
+	 */
+	private static void readOnly() {
+		World world = new World(true);
+		Spinner a = new Spinner(), b = new Spinner();
+		world.add(a);
+		world.add(b, 5, 5);
+		world.update();
+		b.rotation = 270;
+		check(a.collidesWith(b), "Spinners should overlap");
+		checkEqual(270.0, b.rotation, "Checking a collision should not change the other Entity");
+		checkEqual(Math.toRadians(-90), b.getRadians(), "Rotation should be read as its equivalent angle");
+		checkEqual(270.0, b.rotation, "Reading the angle should not change the Entity");
+		world.update();
+		checkEqual(-83.0, b.rotation, "The world should bring the rotation back into range after the update");
+	}
+	
+	/**
+	 * Spinners updating across several threads while checking collisions with each other keep every turn they make
+	 */
+	private static void turning() {
+		World world = new World(true);
+		world.setParallelism(4);
+		for(int i = 0; i < COUNT; i++) {
+			Spinner spinner = new Spinner();
+			spinner.rotation = 179;
+			world.add(spinner, (i % 50) * 15, (i / 50) * 15);
+		}
+		for(int i = 0; i < TICKS; i++) {
+			world.update();
+		}
+		double expected = Direction.normalizeDegrees(179 + 7.0 * TICKS);
+		for(Spinner spinner : world.getAllOfType(Spinner.class)) {
+			checkEqual(expected, spinner.rotation, "Every turn should be kept");
+		}
+		world.setParallelism(1);
+	}
+}
@@ -0,0 +1,74 @@
+package jgame;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Times updating and drawing a {@linkplain ParticleSystem} holding about 100,000 live particles, to check it fits
+ * in a frame at 60 updates per second
+ * <br><br>
+ * Each update emits a burst of new particles, which fall under gravity and fade out, and every frame draws the
+ * whole system to a 1280x720 image. Pass a thread count to move the particles in parallel.
+ */
+public class ParticleBenchmark {
+	
+	private static final int WARMUP_FRAMES = 300, FRAMES = 300;
+	private static final double FRAME_MILLIS = 1000 / 60.0;
+	
+	private static class Fountain extends Game {
+		final ParticleSystem particles = new ParticleSystem(120_000) {
+			@Override
+			public void update() {
+				burst(1700, 4, 60, 0xFFFFC040);	// About 100,000 alive once the first ones start expiring
+				super.update();
+			}
+		};
+		
+		Fountain() {
+			super(true);
+		}
+		
+		@Override
+		protected void setup() {
+			world.setSize(new Dimension(1280, 720));
+			particles.setGravity(0, 0.05);
+			world.add(particles, 0, 0);
+		}
+		
+		@Override
+		protected void update() {}
+	}
+	
+	public static void main(String[] args) {
+		int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+		Fountain game = new Fountain();
+		if(threads > 1) {
+			game.world.setParallelism(threads);
+			game.particles.setParallel(true);
+		}
+		BufferedImage image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.translate(640, 360);
+		g.setClip(-640, -360, 1280, 720);
+		for(int i = 0; i < WARMUP_FRAMES; i++) {
+			game.step(1);
+			game.particles.rawPaint(g);
+		}
+		long updating = 0, drawing = 0;
+		for(int i = 0; i < FRAMES; i++) {
+			long start = System.nanoTime();
+			game.step(1);
+			long updated = System.nanoTime();
+			game.particles.rawPaint(g);
+			drawing += System.nanoTime() - updated;
+			updating += updated - start;
+		}
+		g.dispose();
+		double update = updating / 1e6 / FRAMES, draw = drawing / 1e6 / FRAMES;
+		System.out.printf("%d particles on %d thread%s%n", game.particles.getCount(), threads,
+				(threads == 1) ? "" : "s");
+		System.out.printf("update %.2f ms, draw %.2f ms, total %.2f ms of a %.1f ms frame at 60 FPS%n", update, draw,
+				update + draw, FRAME_MILLIS);
+	}
+}
@@ -0,0 +1,147 @@
+package jgame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that a {@linkplain ParticleSystem} removes particles as they expire without losing any others, blends
+ * particles into what is below them, and reports draw bounds covering every particle it draws
+ */
+public class ParticleSystemTest {
+	
+	public static void main(String[] args) {
+		expiry();
+		blending();
+		fading();
+		drawBounds();
+		passed("ParticleSystemTest");
+	}
+	
+	/**
+	 * Particles in a row, each with its own color and life, including the last, which expires first and is moved
+	 * into the place of another expired particle
+	 */
+	private static void expiry() {
+		int[] lives = {1, 3, 2, 1, 3, 1, 2, 1};
+		ParticleSystem system = new ParticleSystem(lives.length);
+		system.setFade(false);
+		for(int i = 0; i < lives.length; i++) {
+			check(system.emit(2 * i, 0, 0, 0, lives[i], color(i)), "Particle " + i + " should fit");
+		}
+		check(!system.emit(0, 0, 0, 0, 1, color(0)), "A full system should refuse more particles");
+		for(int update = 1; update <= 3; update++) {
+			system.update();
+			BufferedImage image = draw(system, 20, 1, null);
+			int alive = 0;
+			for(int i = 0; i < lives.length; i++) {
+				boolean expected = lives[i] > update;
+				if(expected) {
+					alive++;
+				}
+				checkEqual(expected ? color(i) : 0, image.getRGB(2 * i, 0),
+						"Particle " + i + " with life " + lives[i] + " after " + update + " updates");
+			}
+			checkEqual(alive, system.getCount(), "Particles left after " + update + " updates");
+		}
+	}
+	
+	/**
+	 * A translucent particle, and two on the same pixel, over an opaque background
+	 */
+	private static void blending() {
+		ParticleSystem system = new ParticleSystem(3);
+		system.setFade(false);
+		system.emit(1, 1, 0, 0, 10, 0x80FF0000);
+		system.emit(3, 1, 0, 0, 10, 0x80FF0000);
+		system.emit(3, 1, 0, 0, 10, 0x80FF0000);
+		BufferedImage image = draw(system, 5, 3, Color.BLUE);
+		checkColor(new Color(128, 0, 127), image.getRGB(1, 1), "One translucent particle over blue");
+		checkColor(new Color(192, 0, 63), image.getRGB(3, 1), "Two translucent particles over blue");
+		checkColor(Color.BLUE, image.getRGB(2, 1), "Between the particles");
+	}
+	
+	private static void fading() {
+		ParticleSystem system = new ParticleSystem(1);
+		system.emit(0, 0, 0, 0, 4, 0xFFFFFFFF);
+		system.update();	// 3 of 4 updates of life left
+		checkColor(new Color(191, 191, 191), draw(system, 1, 1, Color.BLACK).getRGB(0, 0), "A fading particle");
+	}
+	
+	/**
+	 * Moving particles around a system which is away from the origin, which must all be drawn within its bounds
+	 */
+	private static void drawBounds() {
+		ParticleSystem system = new ParticleSystem(500);
+		system.setFade(false);
+		system.setParticleSize(2);
+		system.x = 150;
+		system.y = 120;
+		checkEqual(0.0, system.getDrawBounds().getWidth(), "Width of an empty system's bounds");
+		Random random = new Random(1);
+		for(int i = 0; i < 500; i++) {
+			system.emit(100 + random.nextDouble() * 100, 100 + random.nextDouble() * 100, random.nextDouble() * 4 - 2,
+					random.nextDouble() * 4 - 2, 5 + random.nextInt(20), 0xFFFFFFFF);
+		}
+		for(int update = 0; update < 12; update++) {
+			system.update();
+			checkCovered(system, "after " + update + " updates");
+		}
+		system.emit(290, 10, 0, 0, 5, 0xFFFFFFFF);
+		checkCovered(system, "after emitting outside the bounds");
+		check(system.getCount() < 500, "Some particles should have expired");
+	}
+	
+	private static void checkCovered(ParticleSystem system, String message) {
+		Rectangle2D bounds = system.getDrawBounds();
+		Rectangle2D world = new Rectangle2D.Double(bounds.getX() + system.x, bounds.getY() + system.y,
+				bounds.getWidth(), bounds.getHeight());
+		BufferedImage image = draw(system, 300, 300, null);
+		int lit = 0;
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < image.getWidth(); x++) {
+				if(image.getRGB(x, y) != 0) {
+					lit++;
+					check(world.contains(x + 0.5, y + 0.5), "Pixel (" + x + ", " + y + ") outside " + world + " "
+							+ message);
+				}
+			}
+		}
+		check(lit > 0, "Some particles should be drawn " + message);
+	}
+	
+	/**
+	 * Draws the system, untransformed, over the specified background, or over nothing if it is {@code null}
+	 */
+	private static BufferedImage draw(ParticleSystem system, int width, int height, Color background) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		if(background != null) {
+			g.setColor(background);
+			g.fillRect(0, 0, width, height);
+		}
+		g.setClip(0, 0, width, height);
+		system.rawPaint(g);
+		g.dispose();
+		return image;
+	}
+	
+	private static int color(int i) {
+		return 0xFF000000 | (i * 0x1F3D5B + 0x102030) & 0xFFFFFF;
+	}
+	
+	/**
+	 * Checks each channel of an opaque color, allowing for rounding by one step either way
+	 */
+	private static void checkColor(Color expected, int argb, String message) {
+		Color actual = new Color(argb, true);
+		check(actual.getAlpha() == 255 && Math.abs(actual.getRed() - expected.getRed()) <= 1
+				&& Math.abs(actual.getGreen() - expected.getGreen()) <= 1
+				&& Math.abs(actual.getBlue() - expected.getBlue()) <= 1, message + ": expected " + expected + ", got "
+				+ actual);
+	}
+}
@@ -0,0 +1,168 @@
+package jgame;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static jgame.Check.*;
+
+/**
+ * Checks {@linkplain PixelMask pixel collisions} against comparing every pair of pixels, for masks narrower and
+ * wider than a word, at negative and positive offsets, flipped and not
+ */
+public class PixelMaskTest {
+	
+	private static final int PAIRS = 20_000;
+	
+	private static class Plain extends Entity {
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {}
+	}
+	
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		int[] hits = new int[3];
+		for(int i = 0; i < PAIRS; i++) {
+			hits[0] += masks(random) ? 1 : 0;
+			hits[1] += entities(random) ? 1 : 0;
+			hits[2] += rectangles(random) ? 1 : 0;
+		}
+		for(int hit : hits) {	// Make sure both answers were tested often
+			check(hit > PAIRS / 10 && hit < PAIRS * 9 / 10, "Only " + hit + " of " + PAIRS + " pairs collided");
+		}
+		passed("PixelMaskTest");
+	}
+	
+	/**
+	 * Compares two masks, either of which may be mirrored, placed anywhere around each other
+	 */
+	private static boolean masks(Random random) {
+		BufferedImage a = image(random), b = image(random);
+		boolean flipA = random.nextBoolean(), flipB = random.nextBoolean();
+		PixelMask ma = flipA ? PixelMask.of(a).mirrored() : PixelMask.of(a);
+		PixelMask mb = flipB ? PixelMask.of(b).mirrored() : PixelMask.of(b);
+		int ax = random.nextInt(200) - 100, ay = random.nextInt(20) - 10;
+		int bx = ax + random.nextInt(a.getWidth() + b.getWidth()) - b.getWidth();
+		int by = ay + random.nextInt(a.getHeight() + b.getHeight()) - b.getHeight();
+		boolean expected = false;
+		for(int y = 0; y < a.getHeight() && !expected; y++) {
+			for(int x = 0; x < a.getWidth() && !expected; x++) {
+				int ox = ax + x - bx, oy = ay + y - by;
+				expected = solid(a, x, y, flipA) && solid(b, ox, oy, flipB);
+			}
+		}
+		boolean actual = ma.intersects(ax, ay, mb, bx, by);
+		checkEqual(expected, actual, "Masks " + a.getWidth() + "x" + a.getHeight() + (flipA ? " flipped" : "") + " at ("
+				+ ax + ", " + ay + ") and " + b.getWidth() + "x" + b.getHeight() + (flipB ? " flipped" : "") + " at ("
+				+ bx + ", " + by + ")");
+		checkEqual(expected, mb.intersects(bx, by, ma, ax, ay), "The same masks the other way around");
+		return expected;
+	}
+	
+	/**
+	 * Compares two Entities with pixel collisions, at whole numbered positions, either of which may be flipped
+	 */
+	private static boolean entities(Random random) {
+		Entity a = entity(random), b = entity(random);
+		BufferedImage ia = a.sprite.getImage(), ib = b.sprite.getImage();
+		b.x = a.x + random.nextInt(ia.getWidth() + ib.getWidth()) - (ia.getWidth() + ib.getWidth()) / 2;
+		b.y = a.y + random.nextInt(ia.getHeight() + ib.getHeight()) - (ia.getHeight() + ib.getHeight()) / 2;
+		boolean expected = false;
+		for(int y = 0; y < ia.getHeight() && !expected; y++) {
+			for(int x = 0; x < ia.getWidth() && !expected; x++) {
+				if(ia.getRGB(x, y) >>> 24 >= 128) {
+					int column = column(a, x), row = (int)a.y - ia.getHeight() / 2 + y;
+					for(int other = 0; other < ib.getWidth() && !expected; other++) {
+						int otherRow = row - ((int)b.y - ib.getHeight() / 2);
+						expected = column(b, other) == column && otherRow >= 0 && otherRow < ib.getHeight()
+								&& ib.getRGB(other, otherRow) >>> 24 >= 128;
+					}
+				}
+			}
+		}
+		checkEqual(expected, a.collidesWith(b), "Entities " + describe(a) + " and " + describe(b));
+		checkEqual(expected, b.collidesWith(a), "Entities " + describe(b) + " and " + describe(a));
+		return expected;
+	}
+	
+	/**
+	 * Compares an Entity with pixel collisions to an unrotated rectangle, which need not be on whole pixels
+	 */
+	private static boolean rectangles(Random random) {
+		Entity a = entity(random);
+		BufferedImage image = a.sprite.getImage();
+		Entity b = new Plain();
+		b.rotationMode = Entity.RotationMode.NONE;
+		double width = 0.5 + random.nextDouble() * 20, height = 0.5 + random.nextDouble() * 20;
+		Rectangle2D.Double area = new Rectangle2D.Double(a.x - image.getWidth() / 2.0 - width
+				+ random.nextDouble() * (image.getWidth() + width), a.y - image.getHeight() / 2.0 - height
+				+ random.nextDouble() * (image.getHeight() + height), width, height);
+		b.shape = area;
+		boolean expected = false;
+		for(int y = 0; y < image.getHeight() && !expected; y++) {
+			for(int x = 0; x < image.getWidth() && !expected; x++) {
+				int column = column(a, x), row = (int)a.y - image.getHeight() / 2 + y;
+				expected = image.getRGB(x, y) >>> 24 >= 128 && column < area.getMaxX() && column + 1 > area.getMinX()
+						&& row < area.getMaxY() && row + 1 > area.getMinY();
+			}
+		}
+		checkEqual(expected, a.collidesWith(b), "Entity " + describe(a) + " and rectangle " + area);
+		checkEqual(expected, b.collidesWith(a), "Rectangle " + area + " and entity " + describe(a));
+		return expected;
+	}
+	
+	/**
+	 * Returns the column of the world pixel {@code x} of the Entity's image is drawn in: the image is drawn with its
+	 * left edge half its width left of the Entity, then mirrored about the Entity if it is flipped
+	 */
+	private static int column(Entity e, int x) {
+		int width = e.sprite.getImage().getWidth();
+		int local = x - width / 2;
+		return (int)e.x + ((e.rotation == 180) ? -local - 1 : local);
+	}
+	
+	private static boolean solid(BufferedImage image, int x, int y, boolean flipped) {
+		if(x < 0 || y < 0 || x >= image.getWidth() || y >= image.getHeight()) {
+			return false;
+		}
+		return image.getRGB(flipped ? image.getWidth() - 1 - x : x, y) >>> 24 >= 128;
+	}
+	
+	private static Entity entity(Random random) {
+		Entity e = new Plain();
+		e.sprite = new Sprite(image(random));
+		e.collisionMode = Entity.CollisionMode.PIXEL;
+		e.rotationMode = Entity.RotationMode.FLIP;
+		e.rotation = random.nextBoolean() ? 180 : 0;
+		e.x = random.nextInt(400) - 200;
+		e.y = random.nextInt(40) - 20;
+		return e;
+	}
+	
+	private static String describe(Entity e) {
+		BufferedImage image = e.sprite.getImage();
+		return image.getWidth() + "x" + image.getHeight() + ((e.rotation == 180) ? " flipped" : "") + " at (" + e.x
+				+ ", " + e.y + ")";
+	}
+	
+	/**
+	 * Returns an image up to 150 pixels wide, so masks take up to three words a row, with scattered solid pixels
+	 * and some which are only partly transparent
+	 */
+	private static BufferedImage image(Random random) {
+		int width = 1 + random.nextInt(150), height = 1 + random.nextInt(12);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		double density = 0.01 + random.nextDouble() * 0.1;
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				if(random.nextDouble() < density) {
+					image.setRGB(x, y, (random.nextBoolean() ? 0xFF : 0x7F + random.nextInt(3)) << 24 | 0xFFFFFF);
+				}
+			}
+		}
+		return image;
+	}
+}
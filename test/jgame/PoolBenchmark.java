@@ -0,0 +1,115 @@
+package jgame;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the memory allocated and the garbage collections caused by spawning short lived
+ * {@linkplain Entity Entities}, creating new ones against taking them from an {@linkplain EntityPool}
+ * <br><br>
+ * Each update spawns a burst of bullets which remove themselves a few updates later. Bullets either move, so their
+ * collision geometry is rebuilt after every update, or stand still, which leaves only the cost of spawning.
+ */
+public class PoolBenchmark {
+	
+	private static final int SPAWNS_PER_UPDATE = 500, LIFETIME = 4, WARMUP_UPDATES = 200, UPDATES = 2000;
+	
+	private static class Bullet extends Entity {
+		final boolean moving;
+		final double[] trail = new double[32];	// Stands in for the state a real bullet would carry
+		double dx, dy;
+		int life;
+		
+		Bullet(boolean moving) {
+			this.moving = moving;
+		}
+		
+		@Override
+		public void setup() {
+			if(shape == null) {
+				shape = new Rectangle(-2, -2, 4, 4);
+			}
+			color = Color.YELLOW;
+			life = LIFETIME;
+			dx = moving ? Math.cos(x) : 0;
+			dy = moving ? Math.sin(y) : 0;
+		}
+		
+		@Override
+		public void update() {
+			x += dx;
+			y += dy;
+			if(--life <= 0) {
+				world.remove(this);
+			}
+		}
+	}
+	
+	private static class Spawner extends Game {
+		final boolean moving;
+		final EntityPool<Bullet> pool;
+		
+		Spawner(boolean moving, boolean pooled) {
+			super(true);
+			this.moving = moving;
+			this.pool = pooled ? new EntityPool<>(() -> new Bullet(moving)) : null;
+		}
+		
+		@Override
+		protected void setup() {
+			world.setSize(new Dimension(800, 600));
+		}
+		
+		@Override
+		protected void update() {
+			for(int i = 0; i < SPAWNS_PER_UPDATE; i++) {
+				Bullet bullet = (pool != null) ? pool.acquire() : new Bullet(moving);
+				world.add(bullet, i % 800 - 400, i % 600 - 300);
+			}
+		}
+	}
+	
+	public static void main(String[] args) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean)) {
+			System.out.println("This JVM cannot measure allocation per thread");
+			return;
+		}
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean)threads;
+		for(boolean moving : new boolean[] {true, false}) {
+			System.out.println(moving ? "moving bullets" : "stationary bullets");
+			run(allocation, moving, false);
+			run(allocation, moving, true);
+		}
+	}
+	
+	private static void run(com.sun.management.ThreadMXBean allocation, boolean moving, boolean pooled) {
+		Spawner game = new Spawner(moving, pooled);
+		game.step(WARMUP_UPDATES);
+		System.gc();
+		long collections = -collectionCount();
+		long bytes = -allocation.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		game.step(UPDATES);
+		double millis = (System.nanoTime() - start) / 1e6;
+		bytes += allocation.getCurrentThreadAllocatedBytes();
+		collections += collectionCount();
+		System.out.printf("  %-8s %6.0f ms, %6.0f B per spawn, %d collections%n", pooled ? "pooled" : "unpooled",
+				millis, (double)bytes / ((long)UPDATES * SPAWNS_PER_UPDATE), collections);
+		if(pooled) {
+			System.out.println("  pool: " + game.pool);
+		}
+	}
+	
+	private static long collectionCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+}
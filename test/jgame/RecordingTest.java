@@ -0,0 +1,233 @@
+package jgame;
+
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that a headless game {@linkplain Game#record(File) recorded} with generated input
+ * {@linkplain Game#replay(File) replays} into a fresh game with the same seed and the same state after every update,
+ * and that damaged recordings are handled cleanly
+ */
+public class RecordingTest {
+	
+	private static final int UPDATES = 2000;
+	private static final int[] KEYS = {KeyEvent.VK_UP, KeyEvent.VK_DOWN, KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT,
+			KeyEvent.VK_SPACE, KeyEvent.VK_Q};
+	private static final Component SOURCE = new Component() {
+		private static final long serialVersionUID = 1L;
+	};
+	private static final KeyListener KEYBOARD = Controller.listener;
+	private static final MouseListener BUTTONS = Controller.listener;
+	private static final MouseMotionListener MOTION = Controller.listener;
+	
+	/**
+	 * Moves with the arrow keys, follows the mouse while its button is held, and wanders randomly
+	 */
+	private static class Walker extends Entity {
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {
+			if(Controller.controlDown("LEFT")) x -= 2;
+			if(Controller.controlDown("RIGHT")) x += 2;
+			if(Controller.controlDown("UP")) y -= 2;
+			if(Controller.controlDown("DOWN")) y += 2;
+			if(Controller.mouseButtonDown(MouseEvent.BUTTON1)) {
+				Point mouse = Controller.getMouse();
+				x += Math.signum(mouse.x - x);
+				y += Math.signum(mouse.y - y);
+			}
+			x += world.getRandom().nextInt(3) - 1;
+			y += world.getRandom().nextInt(3) - 1;
+		}
+	}
+	
+	/**
+	 * Adds a walker wherever the mouse is each time space is pressed, and removes one each time Q is pressed
+	 */
+	private static class Walkers extends Game {
+		Walkers() {
+			super(true);
+		}
+		
+		@Override
+		protected void setup() {
+			world.add(new Walker(), 0, 0);
+		}
+		
+		@Override
+		protected void update() {
+			if(Controller.controlPressed("SPACE")) {
+				Point mouse = Controller.getMouse();
+				world.add(new Walker(), mouse.x, mouse.y);
+			}
+			List<Walker> walkers = world.getAllOfType(Walker.class);
+			if(Controller.keyPressed(KeyEvent.VK_Q) && walkers.size() > 1) {
+				world.remove(walkers.get(world.getRandom().nextInt(walkers.size())));
+			}
+		}
+		
+		/**
+		 * Describes where every walker is, and the mouse's movement
+		 */
+		String state() {
+			StringBuilder out = new StringBuilder();
+			for(Walker walker : world.getAllOfType(Walker.class)) {
+				out.append(walker.x).append(',').append(walker.y).append(' ');
+			}
+			return out.append(Controller.getMouseMovement()).toString();
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		File file = File.createTempFile("jgame", ".rec");
+		File damaged = File.createTempFile("jgame", ".rec");
+		try {
+			Walkers recorded = new Walkers();
+			recorded.record(file);
+			List<String> expected = record(recorded);
+			roundTrip(file, recorded.world.getSeed(), expected);
+			truncated(file, damaged, expected);
+			badHeaders(damaged);
+		} finally {
+			file.delete();
+			damaged.delete();
+		}
+		passed("RecordingTest");
+	}
+	
+	/**
+	 * Runs the game with random input, returning its state after every update
+	 */
+	private static List<String> record(Walkers game) {
+		Random random = new Random(1);
+		List<String> states = new ArrayList<>();
+		int mouseX = 0, mouseY = 0;
+		for(int update = 0; update < UPDATES; update++) {
+			int events = random.nextInt(4);
+			for(int i = 0; i < events; i++) {
+				int key = KEYS[random.nextInt(KEYS.length)];
+				switch(random.nextInt(6)) {
+					case 0:
+					case 1:
+						KEYBOARD.keyPressed(key(KeyEvent.KEY_PRESSED, key));
+						break;
+					case 2:
+					case 3:
+						KEYBOARD.keyReleased(key(KeyEvent.KEY_RELEASED, key));
+						break;
+					case 4:
+						BUTTONS.mousePressed(mouse(MouseEvent.MOUSE_PRESSED, mouseX, mouseY));
+						break;
+					default:
+						BUTTONS.mouseReleased(mouse(MouseEvent.MOUSE_RELEASED, mouseX, mouseY));
+				}
+			}
+			if(random.nextInt(3) == 0) {	// Sometimes far, and sometimes outside the window, so movements take
+				mouseX = random.nextInt(6000) - 1000;	// several bytes and can be negative
+				mouseY = random.nextInt(200) - 100;
+				MOTION.mouseMoved(mouse(MouseEvent.MOUSE_MOVED, mouseX, mouseY));
+			}
+			game.step(1);
+			states.add(game.state());
+		}
+		game.stopRecording();
+		return states;
+	}
+	
+	private static void roundTrip(File file, long seed, List<String> expected) throws IOException {
+		Walkers replayed = new Walkers();
+		replayed.world.setSeed(seed + 1);
+		replayed.replay(file);
+		checkEqual(seed, replayed.world.getSeed(), "Seed restored by the replay");
+		List<String> states = replay(replayed, expected.size());
+		checkEqual(expected.size(), states.size(), "Updates replayed");
+		for(int i = 0; i < expected.size(); i++) {
+			checkEqual(expected.get(i), states.get(i), "State after update " + i);
+		}
+		replayed.step(1);
+		check(!replayed.isReplaying(), "The replay should end when the recording runs out");
+	}
+	
+	/**
+	 * A recording cut off part way through, which should replay the updates before the cut, then stop
+	 */
+	private static void truncated(File file, File damaged, List<String> expected) throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		Files.write(damaged.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+		Walkers replayed = new Walkers();
+		replayed.replay(damaged);
+		List<String> states = replay(replayed, expected.size());
+		check(states.size() > 10 && states.size() < expected.size(), "Updates replayed from half a recording: "
+				+ states.size());
+		for(int i = 0; i < states.size() - 1; i++) {	// The last update may have been cut part way through
+			checkEqual(expected.get(i), states.get(i), "State after update " + i + " of half a recording");
+		}
+	}
+	
+	private static void badHeaders(File damaged) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new FileOutputStream(damaged))) {
+			out.writeInt(0x12345678);
+			out.writeByte(1);
+			out.writeLong(0);
+		}
+		rejected(damaged, "A recording with the wrong magic number");
+		try(DataOutputStream out = new DataOutputStream(new FileOutputStream(damaged))) {
+			out.writeShort(0x4A47);
+		}
+		rejected(damaged, "A recording cut off in its header");
+	}
+	
+	private static void rejected(File file, String message) {
+		Walkers game = new Walkers();
+		try {
+			game.replay(file);
+		} catch(IOException e) {
+			check(!game.isReplaying(), message + " should not start replaying");
+			game.step(1);
+			return;
+		}
+		throw new AssertionError(message + " should be rejected");
+	}
+	
+	/**
+	 * Steps the game until its replay runs out, returning its state after every update replayed
+	 */
+	private static List<String> replay(Walkers game, int most) {
+		List<String> states = new ArrayList<>();
+		while(states.size() <= most) {
+			game.step(1);
+			if(!game.isReplaying()) {
+				break;
+			}
+			states.add(game.state());
+		}
+		return states;
+	}
+	
+	private static KeyEvent key(int id, int code) {
+		return new KeyEvent(SOURCE, id, 0, 0, code, KeyEvent.CHAR_UNDEFINED);
+	}
+	
+	private static MouseEvent mouse(int id, int x, int y) {
+		int button = (id == MouseEvent.MOUSE_MOVED) ? MouseEvent.NOBUTTON : MouseEvent.BUTTON1;
+		return new MouseEvent(SOURCE, id, 0, 0, x, y, 0, false, button);
+	}
+}
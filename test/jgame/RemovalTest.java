@@ -0,0 +1,101 @@
+package jgame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that removing {@linkplain Entity Entities}, with or without {@linkplain World#setPreserveOrder(boolean)
+ * preserving order}, leaves every list and layer of Entities holding exactly the ones still in the world
+ */
+public class RemovalTest {
+	
+	private interface Marked {}
+	
+	private static class Plain extends Entity {
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {}
+	}
+	
+	private static class Special extends Plain implements Marked {}
+	
+	public static void main(String[] args) {
+		churn(true);
+		churn(false);
+		passed("RemovalTest");
+	}
+	
+	/**
+	 * Adds and removes random Entities over many updates, checking the world against a copy kept alongside it
+	 */
+	private static void churn(boolean preserveOrder) {
+		World world = new World(true);
+		world.setPreserveOrder(preserveOrder);
+		Random random = new Random(preserveOrder ? 1 : 2);
+		List<Entity> live = new ArrayList<>();
+		for(int tick = 0; tick < 300; tick++) {
+			int removes = random.nextInt(20);
+			for(int i = 0; i < removes && !live.isEmpty(); i++) {
+				Entity e = live.remove(random.nextInt(live.size()));
+				world.remove(e);
+				if(random.nextInt(4) == 0) {
+					world.remove(e);	// Removing twice should do nothing more
+				}
+			}
+			for(int i = 0; i < 5 && !live.isEmpty(); i++) {
+				live.get(random.nextInt(live.size())).setLayer(random.nextInt(3));
+			}
+			int adds = random.nextInt(20);
+			for(int i = 0; i < adds; i++) {
+				Entity e = random.nextBoolean() ? new Plain() : new Special();
+				e.setLayer(random.nextInt(3));
+				world.add(e);
+				live.add(e);
+			}
+			world.update();
+			checkType(world, Entity.class, live);
+			checkType(world, Plain.class, live);
+			checkType(world, Special.class, live);
+			checkLayers(world, live);
+			if(preserveOrder) {
+				List<Plain> plain = world.getAllOfType(Plain.class);
+				for(int i = 1; i < plain.size(); i++) {
+					check(live.indexOf(plain.get(i - 1)) < live.indexOf(plain.get(i)), "Order should be kept");
+				}
+			}
+		}
+	}
+	
+	private static void checkLayers(World world, List<Entity> live) {
+		int total = 0;
+		for(int layer = 0; layer < 3; layer++) {
+			List<Entity> drawn = world.getLayerEntities(layer);
+			for(int i = 0; i < drawn.size(); i++) {
+				Entity e = drawn.get(i);
+				check(live.contains(e), "Only Entities in the world should be drawn");
+				checkEqual(layer, e.getLayer(), "Entity should be drawn in its own layer");
+				checkEqual(i, e.layerSlot, "Entity should know where it is in its layer");
+			}
+			total += drawn.size();
+		}
+		checkEqual(live.size(), total, "Every Entity should be drawn once");
+	}
+	
+	private static void checkType(World world, Class<? extends Entity> type, List<Entity> live) {
+		HashSet<Entity> expected = new HashSet<>();
+		for(Entity e : live) {
+			if(type.isInstance(e)) {
+				expected.add(e);
+			}
+		}
+		List<? extends Entity> actual = world.getAllOfType(type);
+		checkEqual(expected.size(), actual.size(), "Number of " + type.getSimpleName() + " Entities");
+		checkEqual(expected, new HashSet<>(actual), type.getSimpleName() + " Entities");
+	}
+}
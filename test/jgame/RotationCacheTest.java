@@ -0,0 +1,123 @@
+package jgame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import static jgame.Check.*;
+
+/**
+ * Checks the {@linkplain Sprite#setRotationCache(int, long) rotation cache}: angles round to the nearest cached
+ * angle across a full turn, the cache stops at its budget without rotating anything more, and drawing from it
+ * matches drawing under a rotation at angles where both are exact
+ */
+public class RotationCacheTest {
+	
+	private static class Plain extends Entity {
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {}
+	}
+	
+	public static void main(String[] args) {
+		nearestAngle();
+		budget();
+		sameAsRotated();
+		passed("RotationCacheTest");
+	}
+	
+	private static void nearestAngle() {
+		Sprite sprite = new Sprite(image(20, 10));
+		sprite.setRotationCache(8, Long.MAX_VALUE);
+		BufferedImage image = sprite.getImage();
+		double step = Math.PI / 4;
+		BufferedImage zero = sprite.getRotatedImage(image, 0);
+		check(zero == sprite.getRotatedImage(image, -0.1), "A small negative angle should round to zero");
+		check(zero == sprite.getRotatedImage(image, 2 * Math.PI - 0.1), "Almost a full turn should wrap to zero");
+		check(zero == sprite.getRotatedImage(image, -4 * Math.PI), "Whole turns should wrap to zero");
+		BufferedImage last = sprite.getRotatedImage(image, -step);
+		check(last != zero, "A step back should be its own angle");
+		check(last == sprite.getRotatedImage(image, 7 * step + 0.1), "A step back should be the last angle");
+		check(last == sprite.getRotatedImage(image, -9 * step), "A step back past a turn should be the last angle");
+		check(sprite.getRotatedImage(image, 3 * step - 0.2) == sprite.getRotatedImage(image, 3 * step + 0.2),
+				"Either side of an angle should round to it");
+	}
+	
+	private static void budget() {
+		Sprite sprite = new Sprite(image(64, 64));
+		long quarterTurnBytes = 4L * 64 * 64;
+		sprite.setRotationCache(8, quarterTurnBytes * 3);	// Room for three square angles
+		BufferedImage image = sprite.getImage();
+		for(int i = 0; i < 3; i++) {
+			check(sprite.getRotatedImage(image, i * Math.PI / 2) != null, "Quarter turn " + i + " should fit");
+		}
+		check(sprite.getRotatedImage(image, 3 * Math.PI / 2) == null, "A fourth quarter turn should not fit");
+		checkEqual(quarterTurnBytes * 3, sprite.getRotationCacheBytes(), "Memory used by the cache");
+		
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean)threads;
+			long before = allocation.getCurrentThreadAllocatedBytes();
+			for(int i = 0; i < 1000; i++) {
+				check(sprite.getRotatedImage(image, (i % 4 * 2 + 1) * Math.PI / 4) == null,
+						"A diagonal should not fit in a full cache");
+				check(sprite.getRotatedImage(image, 3 * Math.PI / 2) == null, "A full cache should stay full");
+			}
+			long allocated = allocation.getCurrentThreadAllocatedBytes() - before;
+			check(allocated < quarterTurnBytes, "Asking a full cache allocated " + allocated + " bytes");
+		}
+		checkEqual(quarterTurnBytes * 3, sprite.getRotationCacheBytes(), "Memory used by a full cache");
+	}
+	
+	/**
+	 * Draws an Entity at each quarter turn with and without a rotation cache, which should give the same pixels
+	 */
+	private static void sameAsRotated() {
+		BufferedImage image = image(20, 10);
+		Sprite cached = new Sprite(image), plain = new Sprite(image);
+		cached.setRotationCache(4, Long.MAX_VALUE);
+		for(int quarter = -2; quarter <= 4; quarter++) {
+			BufferedImage expected = draw(plain, quarter * 90), actual = draw(cached, quarter * 90);
+			for(int y = 0; y < expected.getHeight(); y++) {
+				for(int x = 0; x < expected.getWidth(); x++) {
+					if(expected.getRGB(x, y) != actual.getRGB(x, y)) {
+						throw new AssertionError("Cached rotation by " + quarter * 90 + " degrees differs at (" + x
+								+ ", " + y + ")");
+					}
+				}
+			}
+		}
+		check(cached.getRotationCacheBytes() > 0, "Drawing should have used the cache");
+	}
+	
+	private static BufferedImage draw(Sprite sprite, double rotation) {
+		Entity e = new Plain();
+		e.sprite = sprite;
+		e.x = 20;
+		e.y = 20;
+		e.rotation = rotation;
+		BufferedImage out = new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = out.createGraphics();
+		e.rawPaint(g);
+		g.dispose();
+		return out;
+	}
+	
+	/**
+	 * Returns an image with a different color in each quarter, so any flip or turn shows
+	 */
+	private static BufferedImage image(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		Color[] colors = {Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW};
+		for(int i = 0; i < 4; i++) {
+			g.setColor(colors[i]);
+			g.fillRect(i % 2 * width / 2, i / 2 * height / 2, width / 2, height / 2);
+		}
+		g.dispose();
+		return image;
+	}
+}
@@ -0,0 +1,163 @@
+package jgame;
+
+import java.awt.Rectangle;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that collision queries see {@linkplain Entity Entities} where they are, not where the
+ * {@linkplain SpatialHash} last put them
+ */
+public class SpatialHashTest {
+	
+	private static class Target extends Entity {
+		@Override
+		public void setup() {
+			shape = new Rectangle(-5, -5, 10, 10);
+		}
+		
+		@Override
+		public void update() {}
+	}
+	
+	/** Moves another Entity during its own update */
+	private static class Mover extends Entity {
+		Entity moved;
+		double toX, toY;
+		
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {
+			moved.x = toX;
+			moved.y = toY;
+		}
+	}
+	
+	/** Looks for Targets during its own update */
+	private static class Seeker extends Entity {
+		Target watched, found;
+		boolean touching;
+		
+		@Override
+		public void setup() {
+			shape = new Rectangle(-5, -5, 10, 10);
+		}
+		
+		@Override
+		public void update() {
+			touching = this.collidesWith(watched);
+			found = this.collisionWithType(Target.class);
+		}
+	}
+	
+	public static void main(String[] args) {
+		movedByAnother();
+		movedAway();
+		emptiedCells();
+		reshaped();
+		passed("SpatialHashTest");
+	}
+	
+	private static World world(Mover mover, Seeker seeker, Target target) {
+		World world = new World(true);
+		world.add(mover);
+		world.add(seeker, 0, 0);
+		world.add(target, 1000, 1000);
+		// Enough Targets that queries go through the spatial hash rather than checking each one
+		for(int i = 0; i < 50; i++) {
+			world.add(new Target(), -1000 - i * 20, -1000);
+		}
+		mover.moved = target;
+		seeker.watched = target;
+		mover.toX = 1000;
+		mover.toY = 1000;
+		world.update();
+		return world;
+	}
+	
+	/**
+	 * An Entity moved onto another by a third Entity's update, and found touching it, is also found by a query for
+	 * its type in the same update
+	 */
+	private static void movedByAnother() {
+		Mover mover = new Mover();
+		Seeker seeker = new Seeker();
+		Target target = new Target();
+		World world = world(mover, seeker, target);
+		
+		mover.toX = 3;
+		mover.toY = 3;
+		world.update();
+		check(seeker.touching, "Target should overlap the Seeker");
+		check(seeker.found == target, "Seeker should find the Target moved onto it");
+	}
+	
+	/**
+	 * An Entity moved away by a third Entity's update is no longer found in the same update
+	 */
+	private static void movedAway() {
+		Mover mover = new Mover();
+		Seeker seeker = new Seeker();
+		Target target = new Target();
+		World world = world(mover, seeker, target);
+		
+		mover.toX = 2;
+		mover.toY = 2;
+		world.update();
+		check(seeker.found == target, "Seeker should find the Target moved onto it");
+		mover.toX = 500;
+		mover.toY = 500;
+		world.update();
+		check(!seeker.touching, "Target should no longer overlap the Seeker");
+		check(seeker.found == null, "Seeker should not find the Target moved away from it");
+	}
+	
+	/**
+	 * Cells left behind by moving Entities are reused rather than making the table grow for as long as the world
+	 * runs
+	 */
+	private static void emptiedCells() {
+		World world = new World(true);
+		for(int i = 0; i < 100; i++) {
+			Target target = new Target() {
+				@Override
+				public void update() {
+					x += 20;
+				}
+			};
+			world.add(target, 0, i * 20);
+		}
+		for(int i = 0; i < 5000; i++) {
+			world.update();
+		}
+		SpatialHash hash = world.getSpatialHash();
+		check(hash.occupiedCells() <= 400, "Only cells around the Targets should be in use");
+		check(hash.capacity() <= 4096, "Table should not grow with every cell ever used, but has "
+				+ hash.capacity() + " slots");
+	}
+	
+	/**
+	 * A shape grown in place is noticed once the Entity's geometry is invalidated, both by collision checks and by
+	 * queries
+	 */
+	private static void reshaped() {
+		World world = new World(true);
+		Seeker seeker = new Seeker();
+		Target target = new Target();
+		world.add(seeker, 0, 0);
+		world.add(target, 100, 0);
+		for(int i = 0; i < 50; i++) {
+			world.add(new Target(), -1000 - i * 20, -1000);
+		}
+		seeker.watched = target;
+		world.update();
+		check(!seeker.touching && seeker.found == null, "Target should start out of reach");
+		
+		((Rectangle)target.shape).setBounds(-100, -5, 200, 10);
+		target.invalidateGeometry();
+		check(seeker.collidesWith(target), "Grown Target should reach the Seeker");
+		check(seeker.collisionWithType(Target.class) == target, "Grown Target should be found by a query");
+	}
+}
@@ -0,0 +1,157 @@
+package jgame;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import static jgame.Check.*;
+
+/**
+ * Checks that a {@linkplain World#setLayerStatic(int, boolean) static layer} is drawn again only when it changes,
+ * and that drawing it from its cache gives the same pixels as drawing it every frame
+ */
+public class StaticLayerTest {
+	
+	private static final int SIZE = 100;
+	
+	/**
+	 * A square which counts how many times it is drawn
+	 */
+	private static class Tile extends Entity {
+		int paints;
+		
+		Tile(Color color) {
+			this.color = color;
+			this.shape = new Rectangle(-5, -5, 10, 10);
+		}
+		
+		@Override
+		public void setup() {}
+		
+		@Override
+		public void update() {}
+		
+		@Override
+		public void rawPaint(java.awt.Graphics g) {
+			paints++;
+			super.rawPaint(g);
+		}
+	}
+	
+	public static void main(String[] args) {
+		redraws();
+		samePixels();
+		passed("StaticLayerTest");
+	}
+	
+	private static void redraws() {
+		World world = world();
+		world.setLayerStatic(1, true);
+		Tile tile = new Tile(Color.RED);
+		tile.setLayer(1);
+		world.add(tile, -20, 0);
+		world.update();
+		
+		BufferedImage first = render(world);
+		checkEqual(1, tile.paints, "Draws of a new static layer");
+		checkEqual(Color.RED.getRGB(), first.getRGB(30, 50), "A tile in a static layer");
+		render(world);
+		render(world);
+		checkEqual(1, tile.paints, "Draws of an unchanged static layer");
+		
+		tile.color = Color.GREEN;
+		checkEqual(Color.RED.getRGB(), render(world).getRGB(30, 50), "A tile changed without being invalidated");
+		checkEqual(1, tile.paints, "Draws after a change without invalidating");
+		tile.invalidate();
+		checkEqual(Color.GREEN.getRGB(), render(world).getRGB(30, 50), "A tile after being invalidated");
+		checkEqual(2, tile.paints, "Draws after invalidating");
+		render(world);
+		checkEqual(2, tile.paints, "Draws after invalidating, then drawing again");
+		
+		Tile other = new Tile(Color.BLUE);
+		other.setLayer(1);
+		world.add(other, 20, 0);
+		world.update();
+		BufferedImage added = render(world);
+		checkEqual(3, tile.paints, "Draws after adding to the layer");
+		checkEqual(Color.BLUE.getRGB(), added.getRGB(70, 50), "A tile added to a static layer");
+		
+		world.remove(other);
+		world.update();
+		BufferedImage removed = render(world);
+		checkEqual(4, tile.paints, "Draws after removing from the layer");
+		checkEqual(Color.DARK_GRAY.getRGB(), removed.getRGB(70, 50), "Where a removed tile was");
+		
+		Tile moving = new Tile(Color.YELLOW);
+		world.add(moving, 20, 0);
+		world.update();
+		render(world);
+		checkEqual(4, tile.paints, "Draws after adding to another layer");
+		moving.setLayer(1);
+		checkEqual(Color.YELLOW.getRGB(), render(world).getRGB(70, 50), "A tile moved into a static layer");
+		checkEqual(5, tile.paints, "Draws after a tile moved into the layer");
+		moving.setLayer(0);
+		render(world);
+		checkEqual(6, tile.paints, "Draws after a tile moved out of the layer");
+		checkEqual(3, moving.paints, "Draws of a tile, once in each frame it was drawn in");
+		
+		world.camera.moveTo(5, 0);
+		render(world);
+		checkEqual(7, tile.paints, "Draws after the view moved");
+		render(world);
+		checkEqual(7, tile.paints, "Draws after the view moved, then drawing again");
+	}
+	
+	/**
+	 * Draws the same scene, across several layers, with and without the middle one being static
+	 */
+	private static void samePixels() {
+		BufferedImage sprite = new BufferedImage(16, 12, BufferedImage.TYPE_INT_ARGB);
+		for(int y = 0; y < sprite.getHeight(); y++) {
+			for(int x = 0; x < sprite.getWidth(); x++) {
+				sprite.setRGB(x, y, ((x + y) % 3 == 0) ? 0 : (0x40 + x * 8) << 24 | 0x30A0F0);
+			}
+		}
+		BufferedImage[] images = new BufferedImage[2];
+		for(int pass = 0; pass < 2; pass++) {
+			World world = world();
+			world.setLayerStatic(1, pass == 1);
+			for(int i = 0; i < 12; i++) {
+				Tile tile = new Tile(new Color(0x20 * (i % 8), 0x80, 0xFF - 0x10 * i, 0x80 + 0x0A * i));
+				tile.setLayer(i % 3);
+				if(i % 4 == 0) {
+					tile.sprite = new Sprite(sprite);
+				}
+				world.add(tile, -45 + i * 8, -40 + i * 7);
+			}
+			world.update();
+			render(world);
+			images[pass] = render(world);
+		}
+		for(int y = 0; y < SIZE; y++) {
+			for(int x = 0; x < SIZE; x++) {
+				if(images[0].getRGB(x, y) != images[1].getRGB(x, y)) {
+					throw new AssertionError("A static layer differs at (" + x + ", " + y + "): "
+							+ Integer.toHexString(images[0].getRGB(x, y)) + " drawn every frame, "
+							+ Integer.toHexString(images[1].getRGB(x, y)) + " from the cache");
+				}
+			}
+		}
+	}
+	
+	private static World world() {
+		World world = new World(true);
+		world.setSize(new Dimension(SIZE, SIZE));
+		return world;
+	}
+	
+	private static BufferedImage render(World world) {
+		BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		world.render(g, SIZE, SIZE);
+		g.dispose();
+		return image;
+	}
+}